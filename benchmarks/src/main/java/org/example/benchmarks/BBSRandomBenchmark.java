@@ -0,0 +1,48 @@
+package org.example.benchmarks;
+
+import org.example.util.BBSRandom;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Salt- and IV-sized draws from a generator over one modulus, with one bit or the secure number of bits per squaring.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class BBSRandomBenchmark {
+    @Param({"16", "128"})
+    int length;
+
+    @Param({"1", "secure"})
+    String bitsPerSquaring;
+
+    private BBSRandom random;
+
+    @Setup
+    public void setUp() {
+        BigInteger modulus = BBSRandom.generateModulus();
+        int bits = bitsPerSquaring.equals("secure") ? BBSRandom.secureBitsPerSquaring(modulus) : Integer.parseInt(bitsPerSquaring);
+        random = new BBSRandom(modulus, bits);
+    }
+
+    @Benchmark
+    public byte[] nextBytes() {
+        return random.nextBytes(length);
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.benchmarks;
+
+import org.example.modules.Blowfish;
+import org.example.modules.FeistelNetwork;
+import org.example.modules.Kuznechik;
+import org.example.modules.PBlockTransformer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.IllegalBlockSizeException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Block cipher and round-function primitives on preallocated buffers, one call per operation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class CipherBenchmark {
+    private static final int BATCH = 32;
+
+    private FeistelNetwork feistel;
+    private Blowfish blowfish;
+    private final byte[] block = new byte[FeistelNetwork.BLOCK_SIZE];
+    private final byte[] half = new byte[FeistelNetwork.BLOCK_SIZE / 2];
+    private final byte[] roundKey = new byte[8];
+    private final byte[] out = new byte[FeistelNetwork.BLOCK_SIZE];
+    private final byte[] blocks = new byte[BATCH * FeistelNetwork.BLOCK_SIZE];
+    private final byte[] blocksOut = new byte[BATCH * FeistelNetwork.BLOCK_SIZE];
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        random.nextBytes(block);
+        random.nextBytes(half);
+        random.nextBytes(roundKey);
+        random.nextBytes(blocks);
+        feistel = new FeistelNetwork(key);
+        blowfish = new Blowfish(key);
+    }
+
+    @Benchmark
+    public byte[] feistelEncryptBlock() throws IllegalBlockSizeException {
+        feistel.encryptBlock(block, 0, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] feistelDecryptBlock() throws IllegalBlockSizeException {
+        feistel.decryptBlock(block, 0, out, 0);
+        return out;
+    }
+
+    /** {@value BATCH} blocks one at a time, the baseline for {@link #feistelEncryptBlocks}. */
+    @Benchmark
+    public byte[] feistelEncryptBlockLoop() throws IllegalBlockSizeException {
+        for (int i = 0; i < BATCH; i++) {
+            feistel.encryptBlock(blocks, i * FeistelNetwork.BLOCK_SIZE, blocksOut, i * FeistelNetwork.BLOCK_SIZE);
+        }
+        return blocksOut;
+    }
+
+    @Benchmark
+    public byte[] feistelEncryptBlocks() throws IllegalBlockSizeException {
+        feistel.encryptBlocks(blocks, 0, BATCH, blocksOut, 0);
+        return blocksOut;
+    }
+
+    @Benchmark
+    public byte[] feistelDecryptBlocks() throws IllegalBlockSizeException {
+        feistel.decryptBlocks(blocks, 0, BATCH, blocksOut, 0);
+        return blocksOut;
+    }
+
+    @Benchmark
+    public byte[] kuznechikEncrypt() {
+        Kuznechik.encrypt(half, 0, roundKey, 0, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] blowfishApplyF() {
+        blowfish.applyF(half, 0, roundKey, 0, roundKey.length, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    public byte[] pBlockApply() {
+        PBlockTransformer.apply(half, 0, half.length, out, 0);
+        return out;
+    }
+}
@@ -0,0 +1,87 @@
+package org.example.benchmarks;
+
+import org.example.CipherMode;
+import org.example.Cryptor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.IllegalBlockSizeException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Whole-file encryption and decryption through {@link Cryptor}, including file I/O, for several sizes and modes.
+ * The key is fixed, so the KDF is not part of the measurement.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CryptorFileBenchmark {
+    @Param({"4096", "1048576", "16777216"})
+    int size;
+
+    @Param({"CBC", "CTR", "SEGMENTED"})
+    CipherMode mode;
+
+    private final byte[] key = "ThisIsAStrongKey1234567890AB1234".getBytes(StandardCharsets.UTF_8);
+    private final byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+    private Cryptor cryptor;
+    private Path directory;
+    private File plain;
+    private File encrypted;
+    private File output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, IllegalBlockSizeException {
+        directory = Files.createTempDirectory("cryptor-bench");
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+        plain = Files.write(directory.resolve("plain"), data).toFile();
+        encrypted = directory.resolve("encrypted").toFile();
+        output = directory.resolve("output").toFile();
+
+        cryptor = new Cryptor();
+        cryptor.setMode(mode);
+        cryptor.encryptFile(plain, encrypted, key, salt);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Benchmark
+    public File encryptFile() throws IOException, IllegalBlockSizeException {
+        cryptor.encryptFile(plain, output, key, salt);
+        return output;
+    }
+
+    @Benchmark
+    public File decryptFile() throws IOException, IllegalBlockSizeException {
+        cryptor.decryptFile(encrypted, output, key);
+        return output;
+    }
+}
@@ -0,0 +1,34 @@
+package org.example.benchmarks;
+
+import org.example.key.KeyGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full PBKDF2 derivation (100,000 iterations) per operation.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Thread)
+public class KeyGeneratorBenchmark {
+    private final KeyGenerator generator = new KeyGenerator();
+    private final byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+
+    @Benchmark
+    public byte[] generateKey() {
+        return generator.generateKey("correct horse battery staple", salt, 32);
+    }
+}
@@ -0,0 +1,82 @@
+package org.example.benchmarks;
+
+import org.example.modules.FeistelNetwork;
+import org.example.util.DataOperator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.IllegalBlockSizeException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DataOperator#xor} and a Feistel block with the Vector API kernel and with the scalar word loop; the
+ * incubator module is only resolved in the forks that add it.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@State(Scope.Thread)
+public class XorBenchmark {
+    private static final String VECTOR = "--add-modules=jdk.incubator.vector";
+    private static final String SCALAR = "-Dcrypto.vector=false";
+
+    @Param({"64", "128", "4096"})
+    int length;
+
+    private byte[] a;
+    private byte[] b;
+    private byte[] out;
+    private FeistelNetwork feistel;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(7);
+        a = new byte[length];
+        b = new byte[length];
+        out = new byte[Math.max(length, FeistelNetwork.BLOCK_SIZE)];
+        random.nextBytes(a);
+        random.nextBytes(b);
+        byte[] key = new byte[32];
+        random.nextBytes(key);
+        feistel = new FeistelNetwork(key);
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = VECTOR)
+    public byte[] xorVector() {
+        DataOperator.xor(a, 0, b, 0, out, 0, length);
+        return out;
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = SCALAR)
+    public byte[] xorScalar() {
+        DataOperator.xor(a, 0, b, 0, out, 0, length);
+        return out;
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = VECTOR)
+    public byte[] feistelBlockVector() throws IllegalBlockSizeException {
+        feistel.encryptBlock(out, 0, out, 0);
+        return out;
+    }
+
+    @Benchmark
+    @Fork(value = 2, jvmArgsAppend = SCALAR)
+    public byte[] feistelBlockScalar() throws IllegalBlockSizeException {
+        feistel.encryptBlock(out, 0, out, 0);
+        return out;
+    }
+}
@@ -0,0 +1,22 @@
+package org.example;
+
+/**
+ * Block cipher mode of an encrypted file. The mode is recorded through the key verifier context,
+ * so files written before modes existed are read as CBC.
+ */
+public enum CipherMode {
+    CBC("KEY_VERIFIER"),
+    CTR("KEY_VERIFIER_CTR"),
+    /** Independently encrypted segments with an index, readable at any position; see {@link SegmentedContainer}. */
+    SEGMENTED("KEY_VERIFIER_SEG");
+
+    private final String verifierContext;
+
+    CipherMode(String verifierContext) {
+        this.verifierContext = verifierContext;
+    }
+
+    public String verifierContext() {
+        return verifierContext;
+    }
+}
@@ -1,41 +1,108 @@
 package org.example;
 
+import org.example.events.FileCryptEvent;
+import org.example.events.ThroughputEvent;
+import org.example.key.Hkdf;
 import org.example.key.KeyVerifier;
+import org.example.modules.CbcCipher;
+import org.example.modules.CtrKeystream;
 import org.example.modules.FeistelNetwork;
-import org.example.util.BBSRandom;
+import org.example.util.BlockPipeline;
+import org.example.util.MappedInputStream;
+import org.example.util.MappedOutputStream;
+import org.example.util.RandomPrefetcher;
 
 import javax.crypto.IllegalBlockSizeException;
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import static org.example.util.DataOperator.*;
 
 public class Cryptor {
     private static final int BLOCK_SIZE = 128;
     private static final int VERIFIER_SIZE = 32;
     private static final int SALT_SIZE = 16;
+    private static final int NONCE_SIZE = 16;
+    private static final byte[] FILE_KEY_INFO = "file key".getBytes(StandardCharsets.UTF_8);
+    private static final int SEGMENT_SIZE = 1 << 20;
+    private static final int PIPELINE_BUFFER_SIZE = 4 << 20;
+    private static final int PIPELINE_DEPTH = 4;
+    private static final int DIRECT_CHUNK_SIZE = 64 << 10;
+
+    private int parallelism = 1;
+    private ExecutorService executor;
+    private CipherMode mode = CipherMode.CBC;
+    private boolean mappedIo;
+    private ProgressListener progress = ProgressListener.NONE;
+
+    /**
+     * Mode used by {@link #encryptFile} and the streams; {@link #decryptFile} detects the mode of each file on its own.
+     */
+    public void setMode(CipherMode mode) {
+        this.mode = mode;
+    }
 
-    private final BBSRandom bbsRandom = new BBSRandom();
-    private long lastUpdateTime = 0;
+    /**
+     * Listener for the progress of {@link #encryptFile} and {@link #decryptFile}; nothing is reported by default.
+     */
+    public void setProgressListener(ProgressListener progress) {
+        this.progress = progress == null ? ProgressListener.NONE : progress;
+    }
 
-    private byte[] addPadding(byte[] input) {
-        int paddingLength = BLOCK_SIZE - (input.length % BLOCK_SIZE);
-        byte[] padded = Arrays.copyOf(input, input.length + paddingLength);
-        Arrays.fill(padded, input.length, padded.length, (byte) paddingLength);
-        return padded;
+    /**
+     * Reads and writes files through memory-mapped windows instead of buffered streams.
+     * The output file is pre-sized and truncated to its final length when done.
+     */
+    public void setMappedIo(boolean mappedIo) {
+        this.mappedIo = mappedIo;
     }
 
-    private byte[] removePadding(byte[] input) {
-        if (input.length == 0) throw new IllegalArgumentException("Unexpected end of block");
+    /**
+     * Number of segments processed concurrently by {@link #decryptFile}, and by segmented encryption;
+     * 1 keeps the single-threaded CBC path, while CTR and segmented files then follow the executor's parallelism.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be at least 1");
+        this.parallelism = parallelism;
+    }
 
-        int paddingLength = input[input.length - 1] & 0xFF;
-        if (paddingLength <= 0 || paddingLength > BLOCK_SIZE) {
-            throw new IllegalArgumentException("Invalid padding");
-        }
-        return Arrays.copyOf(input, input.length - paddingLength);
+    /**
+     * Executor for parallel work; the common ForkJoin pool is used when none is set. The caller owns its lifecycle.
+     */
+    public void setExecutor(ExecutorService executor) {
+        this.executor = executor;
     }
 
     private byte[] createInitVector() {
-        return bbsRandom.nextBytes(BLOCK_SIZE);
+        return RandomPrefetcher.shared().nextIv();
+    }
+
+    /**
+     * Length of the output of {@link #encrypt} for {@code plainLength} input bytes: the IV and the padded ciphertext.
+     */
+    public static int encryptedSize(int plainLength) {
+        long size = BLOCK_SIZE + ((long) plainLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+        if (size > Integer.MAX_VALUE) throw new IllegalArgumentException("Input is too large");
+        return (int) size;
+    }
+
+    /**
+     * Output space {@link #decrypt} needs for {@code encryptedLength} input bytes; the plaintext is up to one block
+     * shorter, because the padding is decrypted in place before it is stripped.
+     */
+    public static int decryptedCapacity(int encryptedLength) {
+        return Math.max(0, encryptedLength - BLOCK_SIZE);
     }
 
     public byte[] encrypt(byte[] input, byte[] key) {
@@ -44,26 +111,9 @@ public class Cryptor {
             return new byte[0];
         }
 
-        FeistelNetwork feistel = new FeistelNetwork(key);
-        byte[] paddedInput = addPadding(input);
-        byte[] iv = createInitVector();
-
-        byte[] encrypted = new byte[paddedInput.length];
-        byte[] prev = iv.clone();
-
-        for (int i = 0; i < paddedInput.length; i += BLOCK_SIZE) {
-            byte[] block = Arrays.copyOfRange(paddedInput, i, i + BLOCK_SIZE);
-            byte[] xored = xor(block, prev);
-            try {
-                byte[] encryptedBlock = feistel.encryptBlock(xored);
-                System.arraycopy(encryptedBlock, 0, encrypted, i, BLOCK_SIZE);
-                prev = encryptedBlock;
-            } catch (IllegalBlockSizeException e) {
-                System.err.println("Illegal block size: " + e.getMessage());
-            }
-        }
-
-        return unionArrays(iv, encrypted);
+        byte[] encrypted = new byte[encryptedSize(input.length)];
+        encrypt(input, 0, input.length, key, encrypted, 0);
+        return encrypted;
     }
 
     public byte[] decrypt(byte[] encryptedData, byte[] key) {
@@ -72,83 +122,252 @@ public class Cryptor {
             return new byte[0];
         }
 
-        byte[] iv = Arrays.copyOfRange(encryptedData, 0, BLOCK_SIZE);
-        byte[] encrypted = Arrays.copyOfRange(encryptedData, BLOCK_SIZE, encryptedData.length);
+        int capacity = decryptedCapacity(encryptedData.length);
+        if (capacity < BLOCK_SIZE || capacity % BLOCK_SIZE != 0) {
+            // Nothing to strip, or malformed input that the general path rejects
+            byte[] decrypted = new byte[capacity];
+            decrypt(encryptedData, 0, encryptedData.length, key, decrypted, 0);
+            return decrypted;
+        }
 
+        // The last block is decrypted first to learn the padding, so the plaintext is allocated at its final size
         FeistelNetwork feistel = new FeistelNetwork(key);
-        byte[] decrypted = new byte[encrypted.length];
-        byte[] prev = iv.clone();
-
-        for (int i = 0; i < encrypted.length; i += BLOCK_SIZE) {
-            byte[] block = Arrays.copyOfRange(encrypted, i, i + BLOCK_SIZE);
-            try {
-                byte[] decryptedBlock = feistel.decryptBlock(block);
-                byte[] xored = xor(decryptedBlock, prev);
-                System.arraycopy(xored, 0, decrypted, i, BLOCK_SIZE);
-                prev = block;
-            } catch (IllegalBlockSizeException e) {
-                System.err.println("Illegal block size: " + e.getMessage());
-            }
+        byte[] scratch = new byte[FeistelNetwork.BATCH_BLOCKS * BLOCK_SIZE];
+        int lastBlock = encryptedData.length - BLOCK_SIZE;
+        byte[] tail = Arrays.copyOfRange(encryptedData, lastBlock, encryptedData.length);
+        try {
+            CbcCipher.decrypt(feistel, Arrays.copyOfRange(encryptedData, lastBlock - BLOCK_SIZE, lastBlock), scratch,
+                    tail, 0, BLOCK_SIZE);
+            int tailLength = BLOCK_SIZE - strippedPadding(tail, 0, BLOCK_SIZE);
+
+            int body = capacity - BLOCK_SIZE;
+            byte[] decrypted = new byte[body + tailLength];
+            System.arraycopy(encryptedData, BLOCK_SIZE, decrypted, 0, body);
+            CbcCipher.decrypt(feistel, Arrays.copyOf(encryptedData, BLOCK_SIZE), scratch, decrypted, 0, body);
+            System.arraycopy(tail, 0, decrypted, body, tailLength);
+            return decrypted;
+        } catch (IllegalBlockSizeException e) {
+            throw new IllegalStateException(e);
         }
+    }
 
+    /**
+     * Encrypts {@code input[offset, offset + length)} into {@code out} at {@code outOffset}, in the format of
+     * {@link #encrypt(byte[], byte[])}, and returns the number of bytes written, {@link #encryptedSize}.
+     * The plaintext is copied once into the output and encrypted there, so no other payload-sized buffer is used.
+     */
+    public int encrypt(byte[] input, int offset, int length, byte[] key, byte[] out, int outOffset) {
+        Objects.checkFromIndexSize(offset, length, input.length);
+        int size = encryptedSize(length);
+        checkCapacity(out.length - outOffset, size, outOffset);
+
+        FeistelNetwork feistel = new FeistelNetwork(key);
+        byte[] chain = createInitVector();
+        System.arraycopy(input, offset, out, outOffset + BLOCK_SIZE, length);
+        System.arraycopy(chain, 0, out, outOffset, BLOCK_SIZE);
+        int paddingStart = outOffset + BLOCK_SIZE + length;
+        Arrays.fill(out, paddingStart, outOffset + size, (byte) (outOffset + size - paddingStart));
         try {
-            return removePadding(decrypted);
-        } catch (IllegalArgumentException e) {
-            System.err.println("Padding error! Returning raw decrypted bytes:");
-            return decrypted;
+            CbcCipher.encrypt(feistel, chain, out, outOffset + BLOCK_SIZE, size - BLOCK_SIZE);
+        } catch (IllegalBlockSizeException e) {
+            throw new IllegalStateException(e);
         }
+        return size;
     }
 
-    public void encryptFile(File inputFile, File outputFile, byte[] key, byte[] salt) throws IOException, IllegalBlockSizeException {
-        boolean overwrite = inputFile.getCanonicalPath().equals(outputFile.getCanonicalPath());
-        File tempFile = overwrite ? File.createTempFile("enc_temp_", ".dat") : outputFile;
-        boolean success = false;
+    /**
+     * Decrypts {@code input[offset, offset + length)} into {@code out} at {@code outOffset} and returns the plaintext
+     * length. {@code out} needs {@link #decryptedCapacity} bytes. The ciphertext is copied once into the output and
+     * decrypted there; as with {@link #decrypt(byte[], byte[])}, invalid padding is reported and left in place.
+     */
+    public int decrypt(byte[] input, int offset, int length, byte[] key, byte[] out, int outOffset) {
+        Objects.checkFromIndexSize(offset, length, input.length);
+        if (length < BLOCK_SIZE) throw new IllegalArgumentException("Encrypted data is too short");
+        if (length % BLOCK_SIZE != 0) throw new IllegalArgumentException("Encrypted data is not a whole number of blocks");
+        int capacity = decryptedCapacity(length);
+        checkCapacity(out.length - outOffset, capacity, outOffset);
 
+        FeistelNetwork feistel = new FeistelNetwork(key);
+        byte[] chain = Arrays.copyOfRange(input, offset, offset + BLOCK_SIZE);
+        System.arraycopy(input, offset + BLOCK_SIZE, out, outOffset, capacity);
         try {
-            KeyVerifier keyVerifier = new KeyVerifier();
-            byte[] verifier = keyVerifier.createKeyVerifier(key);
-            if (verifier == null) throw new IOException("Failed to create key verifier");
+            CbcCipher.decrypt(feistel, chain, new byte[FeistelNetwork.BATCH_BLOCKS * BLOCK_SIZE], out, outOffset, capacity);
+        } catch (IllegalBlockSizeException e) {
+            throw new IllegalStateException(e);
+        }
+        return capacity - strippedPadding(out, outOffset, capacity);
+    }
 
-            try (InputStream in = new BufferedInputStream(new FileInputStream(inputFile));
-                 OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+    /**
+     * Encrypts the remaining bytes of {@code in} into {@code out}, advancing both positions. Heap buffers are
+     * processed in their backing arrays; direct buffers go through a {@value #DIRECT_CHUNK_SIZE}-byte chunk, so
+     * memory use does not grow with the payload either way.
+     *
+     * @return the number of bytes written, {@link #encryptedSize} of {@code in.remaining()}
+     */
+    public int encrypt(ByteBuffer in, ByteBuffer out, byte[] key) {
+        int length = in.remaining();
+        int size = encryptedSize(length);
+        checkCapacity(out.remaining(), size, out.position());
+        if (in.hasArray() && out.hasArray()) {
+            encrypt(in.array(), in.arrayOffset() + in.position(), length, key,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.limit());
+            out.position(out.position() + size);
+            return size;
+        }
 
-                FeistelNetwork feistel = new FeistelNetwork(key);
-                byte[] iv = createInitVector();
-                out.write(iv);
-                byte[] prev = iv.clone();
+        FeistelNetwork feistel = new FeistelNetwork(key);
+        byte[] chain = createInitVector();
+        out.put(chain);
+        byte[] chunk = new byte[DIRECT_CHUNK_SIZE];
+        try {
+            boolean last = false;
+            while (!last) {
+                int n = Math.min(in.remaining(), DIRECT_CHUNK_SIZE - BLOCK_SIZE);
+                in.get(chunk, 0, n);
+                int end = n;
+                last = !in.hasRemaining();
+                if (last) {
+                    int paddingLength = BLOCK_SIZE - n % BLOCK_SIZE;
+                    Arrays.fill(chunk, n, n + paddingLength, (byte) paddingLength);
+                    end += paddingLength;
+                }
+                CbcCipher.encrypt(feistel, chain, chunk, 0, end);
+                out.put(chunk, 0, end);
+            }
+        } catch (IllegalBlockSizeException e) {
+            throw new IllegalStateException(e);
+        }
+        return size;
+    }
 
-                long totalInputSize = inputFile.length();
-                long processed = 0;
+    /**
+     * Decrypts the remaining bytes of {@code in} into {@code out}, advancing both positions; see
+     * {@link #encrypt(ByteBuffer, ByteBuffer, byte[])}. {@code out} needs {@link #decryptedCapacity} bytes left.
+     *
+     * @return the plaintext length
+     */
+    public int decrypt(ByteBuffer in, ByteBuffer out, byte[] key) {
+        int length = in.remaining();
+        if (length < BLOCK_SIZE) throw new IllegalArgumentException("Encrypted data is too short");
+        if (length % BLOCK_SIZE != 0) throw new IllegalArgumentException("Encrypted data is not a whole number of blocks");
+        int capacity = decryptedCapacity(length);
+        checkCapacity(out.remaining(), capacity, out.position());
+        if (in.hasArray() && out.hasArray()) {
+            int plainLength = decrypt(in.array(), in.arrayOffset() + in.position(), length, key,
+                    out.array(), out.arrayOffset() + out.position());
+            in.position(in.limit());
+            out.position(out.position() + plainLength);
+            return plainLength;
+        }
 
-                System.out.println("Encrypting: " + inputFile.getName());
+        FeistelNetwork feistel = new FeistelNetwork(key);
+        byte[] chain = new byte[BLOCK_SIZE];
+        in.get(chain);
+        byte[] chunk = new byte[DIRECT_CHUNK_SIZE];
+        byte[] scratch = new byte[FeistelNetwork.BATCH_BLOCKS * BLOCK_SIZE];
+        int plainLength = 0;
+        try {
+            while (in.hasRemaining()) {
+                int n = Math.min(in.remaining(), DIRECT_CHUNK_SIZE);
+                in.get(chunk, 0, n);
+                CbcCipher.decrypt(feistel, chain, scratch, chunk, 0, n);
+                if (!in.hasRemaining()) n -= strippedPadding(chunk, 0, n);
+                out.put(chunk, 0, n);
+                plainLength += n;
+            }
+        } catch (IllegalBlockSizeException e) {
+            throw new IllegalStateException(e);
+        }
+        return plainLength;
+    }
+
+    // Padding length to strip from decrypted data ending at offset + length, or 0 when it is invalid; every decryption
+    // path reports invalid padding this way and keeps the raw bytes
+    static int strippedPadding(byte[] data, int offset, int length) {
+        int paddingLength = length == 0 ? 0 : data[offset + length - 1] & 0xFF;
+        if (paddingLength == 0 || paddingLength > BLOCK_SIZE) {
+            System.err.println("Padding error! Returning raw decrypted bytes");
+            return 0;
+        }
+        return paddingLength;
+    }
+
+    private static void checkCapacity(int available, int needed, int offset) {
+        if (available < needed) {
+            throw new IllegalArgumentException("Output needs " + needed + " bytes from offset " + offset);
+        }
+    }
 
-                byte[] buffer = new byte[BLOCK_SIZE];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    byte[] chunk = (bytesRead < BLOCK_SIZE)
-                            ? addPadding(Arrays.copyOf(buffer, bytesRead))
-                            : Arrays.copyOf(buffer, BLOCK_SIZE);
+    /**
+     * Wraps {@code out} so that everything written is encrypted incrementally in the file format of
+     * {@link #encryptFile}. The stream must be closed to write the final block and the trailer.
+     */
+    public CryptorOutputStream encryptingStream(OutputStream out, byte[] key, byte[] salt) {
+        return new CryptorOutputStream(out, key, salt, createInitVector(), mode);
+    }
 
-                    byte[] xored = xor(chunk, prev);
-                    byte[] encryptedBlock = feistel.encryptBlock(xored);
-                    out.write(encryptedBlock);
-                    prev = encryptedBlock;
+    /**
+     * Wraps {@code in}, holding data in the file format of {@link #encryptFile}, to read the plaintext incrementally.
+     * The stream cannot detect the mode, so it decrypts with the mode set on this cryptor.
+     */
+    public CryptorInputStream decryptingStream(InputStream in, byte[] key) {
+        return new CryptorInputStream(in, key, mode);
+    }
 
-                    processed += bytesRead;
-                    printProgressBar(processed, totalInputSize);
-                }
+    public void encryptFile(File inputFile, File outputFile, byte[] key, byte[] salt) throws IOException, IllegalBlockSizeException {
+        encryptWithTrailer(inputFile, outputFile, key, unionArrays(createVerifier(key), salt));
+    }
 
-                if (totalInputSize % BLOCK_SIZE == 0) {
-                    byte[] padBlock = addPadding(new byte[0]);
-                    byte[] xored = xor(padBlock, prev);
-                    byte[] encryptedBlock = feistel.encryptBlock(xored);
-                    out.write(encryptedBlock);
-                }
+    /**
+     * Encrypts with a subkey derived from {@code masterKey} and a per-file {@code nonce}, so many files can share
+     * one stretched master key and its salt. The nonce is stored in front of the verifier; {@link #decryptFile}
+     * derives the subkey again when given the master key.
+     */
+    public void encryptFile(File inputFile, File outputFile, byte[] masterKey, byte[] salt, byte[] nonce)
+            throws IOException, IllegalBlockSizeException {
+        if (nonce.length != NONCE_SIZE) throw new IllegalArgumentException("Nonce must be " + NONCE_SIZE + " bytes");
+        byte[] fileKey = deriveFileKey(masterKey, nonce);
+        encryptWithTrailer(inputFile, outputFile, fileKey, unionArrays(unionArrays(nonce, createVerifier(fileKey)), salt));
+    }
 
-                out.write(verifier);
-                out.write(salt);
-                printProgressBar(totalInputSize + verifier.length + salt.length, totalInputSize + verifier.length + salt.length);
-                System.out.println("\nEncryption completed!");
+    private void encryptWithTrailer(File inputFile, File outputFile, byte[] key, byte[] trailer) throws IOException, IllegalBlockSizeException {
+        boolean overwrite = inputFile.getCanonicalPath().equals(outputFile.getCanonicalPath());
+        File tempFile = overwrite ? File.createTempFile("enc_temp_", ".dat") : outputFile;
+        boolean success = false;
+        FileCryptEvent event = new FileCryptEvent();
+        event.begin();
+        long totalInputSize = inputFile.length();
+        progress.fileStarted(inputFile, totalInputSize);
+
+        try {
+
+            long encryptedLen = mode == CipherMode.CTR
+                    ? totalInputSize
+                    : (totalInputSize / BLOCK_SIZE + 1) * BLOCK_SIZE;
+
+            if (mode == CipherMode.SEGMENTED) {
+                encryptSegmented(inputFile, tempFile, key, trailer);
+            } else {
+                try (FileChannel inChannel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+                     RandomAccessFile outFile = new RandomAccessFile(tempFile, "rw");
+                     InputStream in = openInput(inChannel, 0, totalInputSize);
+                     OutputStream out = openOutput(outFile, BLOCK_SIZE + encryptedLen + trailer.length)) {
+
+                    byte[] iv = createInitVector();
+                    out.write(iv);
+
+                    if (mode == CipherMode.CTR) {
+                        try (CtrKeystream keystream = openKeystream(key, iv, totalInputSize)) {
+                            runPipeline(in, totalInputSize, out, ctrStage(keystream));
+                        }
+                    } else {
+                        runPipeline(in, totalInputSize, out, encryptCbcStage(key, iv));
+                    }
+
+                    out.write(trailer);
+                }
             }
             if (overwrite) {
                 if (!inputFile.delete() || !tempFile.renameTo(inputFile)) {
@@ -156,10 +375,12 @@ public class Cryptor {
                 }
             }
             success = true;
+            commit(event, "encrypt", outputFile, mode, totalInputSize);
         } finally {
             if (!success && overwrite && tempFile.exists()) {
                 tempFile.delete();
             }
+            progress.fileFinished(inputFile);
         }
     }
 
@@ -167,72 +388,298 @@ public class Cryptor {
         boolean overwrite = inputFile.getCanonicalPath().equals(outputFile.getCanonicalPath());
         File tempFile = overwrite ? File.createTempFile("dec_temp_", ".dat") : outputFile;
         boolean success = false;
+        FileCryptEvent event = new FileCryptEvent();
+        event.begin();
+        long inputSize = inputFile.length();
+        CipherMode fileMode;
+        // The plaintext size is only known once the trailer has been read, so the file may fail before it started
+        boolean started = false;
 
         try {
-            long fileSize = inputFile.length();
-            if (fileSize < BLOCK_SIZE + VERIFIER_SIZE + SALT_SIZE) throw new IOException("Invalid file format");
-
-            byte[] verifier = new byte[VERIFIER_SIZE];
-            try (RandomAccessFile raf = new RandomAccessFile(inputFile, "r")) {
-                raf.seek(fileSize - VERIFIER_SIZE - SALT_SIZE);
-                raf.readFully(verifier);
+            try (FileChannel inChannel = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ)) {
+                Trailer trailer = readTrailer(inChannel, key);
+                fileMode = trailer.mode();
+                key = trailer.key();
+                long encryptedLen = inChannel.size() - BLOCK_SIZE - trailer.length();
+
+                if (fileMode == CipherMode.SEGMENTED) {
+                    SegmentedContainer container = SegmentedContainer.read(inChannel, BLOCK_SIZE + encryptedLen);
+                    progress.fileStarted(inputFile, container.plainLength());
+                    started = true;
+                    decryptSegmented(container, inChannel, tempFile, key);
+                } else {
+                    progress.fileStarted(inputFile, encryptedLen);
+                    started = true;
+                    try (RandomAccessFile outFile = new RandomAccessFile(tempFile, "rw");
+                         InputStream in = openInput(inChannel, 0, BLOCK_SIZE + encryptedLen);
+                         OutputStream out = openOutput(outFile, encryptedLen)) {
+
+                        byte[] iv = in.readNBytes(BLOCK_SIZE);
+
+                        if (fileMode == CipherMode.CTR) {
+                            try (CtrKeystream keystream = openKeystream(key, iv, encryptedLen)) {
+                                runPipeline(in, encryptedLen, out, ctrStage(keystream));
+                            }
+                        } else if (parallelism > 1 && encryptedLen > SEGMENT_SIZE) {
+                            decryptSegmentsParallel(inChannel, out, key, encryptedLen);
+                        } else {
+                            runPipeline(in, encryptedLen, out, decryptCbcStage(key, iv));
+                        }
+                    }
+                }
+            }
+            if (overwrite) {
+                if (!inputFile.delete() || !tempFile.renameTo(inputFile)) {
+                    throw new IOException("Failed to replace original file after decryption");
+                }
+            }
+            success = true;
+            commit(event, "decrypt", outputFile, fileMode, inputSize);
+        } finally {
+            if (!success && overwrite && tempFile.exists()) {
+                tempFile.delete();
             }
+            if (started) progress.fileFinished(inputFile);
+        }
+    }
 
-            KeyVerifier keyVerifier = new KeyVerifier();
-            if (!keyVerifier.verifyKey(key, verifier)) throw new IllegalArgumentException("Invalid key");
+    // The output size is read back from the file system only when the event is recorded
+    private static void commit(FileCryptEvent event, String operation, File outputFile, CipherMode mode, long inputSize) {
+        event.end();
+        if (!event.shouldCommit()) return;
+        event.operation = operation;
+        event.path = outputFile.getPath();
+        event.mode = mode.name();
+        event.inputSize = inputSize;
+        event.outputSize = outputFile.length();
+        event.commit();
+    }
+
+    /**
+     * Opens a {@link CipherMode#SEGMENTED} file for reading its plaintext at arbitrary positions.
+     */
+    public SegmentedChannel openSeekable(File file, byte[] key) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            Trailer trailer = readTrailer(channel, key);
+            if (trailer.mode() != CipherMode.SEGMENTED) throw new IOException("File is not segmented");
+            SegmentedContainer container = SegmentedContainer.read(channel, channel.size() - trailer.length());
+            return new SegmentedChannel(channel, container, trailer.key());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
 
-            long encryptedLen = fileSize - BLOCK_SIZE - VERIFIER_SIZE - SALT_SIZE;
-            long blocksCount = encryptedLen / BLOCK_SIZE;
+    // Segments are read and written with positional I/O from the pool threads, so mapped I/O does not apply here
+    private void encryptSegmented(File inputFile, File outputFile, byte[] key, byte[] trailer)
+            throws IOException, IllegalBlockSizeException {
+        try (FileChannel in = FileChannel.open(inputFile.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long totalInputSize = in.size();
+            long end = SegmentedContainer.encrypt(in, totalInputSize, out, key, createInitVector(), pool(),
+                    window(), progress::bytesProcessed);
+            out.write(ByteBuffer.wrap(trailer), end);
+        }
+    }
 
-            try (InputStream in = new BufferedInputStream(new FileInputStream(inputFile));
-                 OutputStream out = new BufferedOutputStream(new FileOutputStream(tempFile))) {
+    private void decryptSegmented(SegmentedContainer container, FileChannel in, File outputFile, byte[] key)
+            throws IOException, IllegalBlockSizeException {
+        try (FileChannel out = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            container.decrypt(in, out, key, pool(), window(), progress::bytesProcessed);
+        }
+    }
 
-                FeistelNetwork feistel = new FeistelNetwork(key);
-                byte[] iv = in.readNBytes(BLOCK_SIZE);
-                byte[] prev = iv.clone();
-                byte[] currentBlock = new byte[BLOCK_SIZE];
-                byte[] nextBlock = new byte[BLOCK_SIZE];
+    private ExecutorService pool() {
+        return executor != null ? executor : ForkJoinPool.commonPool();
+    }
 
-                System.out.println("Decrypting...");
+    // Work items kept in flight for CTR, segmented and parallel CBC files: two per worker, sized from the pool unless
+    // parallelism was set
+    private int window() {
+        int workers = parallelism;
+        if (workers == 1 && pool() instanceof ForkJoinPool forkJoin) {
+            workers = forkJoin.getParallelism();
+        }
+        return Math.max(2, workers * 2);
+    }
 
-                if (in.read(currentBlock) != BLOCK_SIZE)
-                    throw new IOException("Invalid encrypted block");
+    /**
+     * Mode, file key and trailer length of an encrypted file.
+     */
+    private record Trailer(CipherMode mode, byte[] key, int length) {
+    }
 
-                for (long i = 0; i < blocksCount - 1; i++) {
-                    if (in.read(nextBlock) != BLOCK_SIZE)
-                        throw new IOException("Invalid encrypted block");
+    // The key is tried as the file key first, then as the master key of a file that keeps a nonce before its verifier
+    private Trailer readTrailer(FileChannel channel, byte[] key) throws IOException {
+        long fileSize = channel.size();
+        if (fileSize < BLOCK_SIZE + VERIFIER_SIZE + SALT_SIZE) throw new IOException("Invalid file format");
+
+        byte[] verifier = new byte[VERIFIER_SIZE];
+        readFully(channel, verifier, fileSize - VERIFIER_SIZE - SALT_SIZE);
+        CipherMode fileMode = detectMode(key, verifier);
+        if (fileMode != null) return new Trailer(fileMode, key, VERIFIER_SIZE + SALT_SIZE);
+
+        if (fileSize >= BLOCK_SIZE + NONCE_SIZE + VERIFIER_SIZE + SALT_SIZE) {
+            byte[] nonce = new byte[NONCE_SIZE];
+            readFully(channel, nonce, fileSize - NONCE_SIZE - VERIFIER_SIZE - SALT_SIZE);
+            byte[] fileKey = deriveFileKey(key, nonce);
+            fileMode = detectMode(fileKey, verifier);
+            if (fileMode != null) return new Trailer(fileMode, fileKey, NONCE_SIZE + VERIFIER_SIZE + SALT_SIZE);
+        }
+        throw new IllegalArgumentException("Invalid key");
+    }
 
-                    byte[] decrypted = feistel.decryptBlock(currentBlock);
-                    byte[] xored = xor(decrypted, prev);
-                    out.write(xored);
+    private CipherMode detectMode(byte[] key, byte[] verifier) {
+        KeyVerifier keyVerifier = new KeyVerifier();
+        for (CipherMode candidate : CipherMode.values()) {
+            if (keyVerifier.verifyKey(key, verifier, candidate.verifierContext())) return candidate;
+        }
+        return null;
+    }
 
-                    prev = currentBlock;
-                    currentBlock = nextBlock.clone();
+    private byte[] createVerifier(byte[] key) throws IOException {
+        byte[] verifier = new KeyVerifier().createKeyVerifier(key, mode.verifierContext());
+        if (verifier == null) throw new IOException("Failed to create key verifier");
+        return verifier;
+    }
 
-                    printProgressBar((i + 1) * BLOCK_SIZE, encryptedLen);
-                }
+    private static byte[] deriveFileKey(byte[] masterKey, byte[] nonce) {
+        return Hkdf.derive(masterKey, nonce, FILE_KEY_INFO, masterKey.length);
+    }
 
-                byte[] decrypted = feistel.decryptBlock(currentBlock);
-                byte[] xored = xor(decrypted, prev);
-                try {
-                    out.write(removePadding(xored));
-                } catch (IllegalArgumentException e) {
-                    System.err.println("Padding error, writing raw: " + e.getMessage());
-                    out.write(xored);
-                }
-                printProgressBar(encryptedLen, encryptedLen);
-                System.out.println("\nDecryption finished.");
+    private BlockPipeline.Stage encryptCbcStage(byte[] key, byte[] iv) {
+        FeistelNetwork feistel = new FeistelNetwork(key);
+        byte[] chain = iv.clone();
+        return (buffer, length, last) -> {
+            int end = length;
+            if (last) {
+                int paddingLength = BLOCK_SIZE - (length % BLOCK_SIZE);
+                Arrays.fill(buffer, length, length + paddingLength, (byte) paddingLength);
+                end += paddingLength;
             }
-            if (overwrite) {
-                if (!inputFile.delete() || !tempFile.renameTo(inputFile)) {
-                    throw new IOException("Failed to replace original file after decryption");
+            CbcCipher.encrypt(feistel, chain, buffer, 0, end);
+
+            ThroughputEvent.add(length);
+            progress.bytesProcessed(length);
+            return end;
+        };
+    }
+
+    private BlockPipeline.Stage decryptCbcStage(byte[] key, byte[] iv) {
+        FeistelNetwork feistel = new FeistelNetwork(key);
+        byte[] chain = iv.clone();
+        byte[] scratch = new byte[FeistelNetwork.BATCH_BLOCKS * BLOCK_SIZE];
+        return (buffer, length, last) -> {
+            if (length == 0 || length % BLOCK_SIZE != 0) throw new IOException("Invalid encrypted block");
+            CbcCipher.decrypt(feistel, chain, scratch, buffer, 0, length);
+
+            ThroughputEvent.add(length);
+            progress.bytesProcessed(length);
+            return last ? length - strippedPadding(buffer, 0, length) : length;
+        };
+    }
+
+    private BlockPipeline.Stage ctrStage(CtrKeystream keystream) {
+        return (buffer, chunkLength, last) -> {
+            keystream.apply(buffer, 0, chunkLength);
+            ThroughputEvent.add(chunkLength);
+            progress.bytesProcessed(chunkLength);
+            return chunkLength;
+        };
+    }
+
+    private void runPipeline(InputStream in, long length, OutputStream out, BlockPipeline.Stage stage)
+            throws IOException, IllegalBlockSizeException {
+        new BlockPipeline(PIPELINE_BUFFER_SIZE, BLOCK_SIZE, PIPELINE_DEPTH).run(in, length, out, stage);
+    }
+
+    private CtrKeystream openKeystream(byte[] key, byte[] nonce, long length) {
+        return new CtrKeystream(key, nonce, length, pool(), window());
+    }
+
+    private void decryptSegmentsParallel(FileChannel channel, OutputStream out, byte[] key, long encryptedLen)
+            throws IOException, IllegalBlockSizeException {
+        // Rejected like the serial stage does; segments would otherwise silently drop a partial last block
+        if (encryptedLen == 0 || encryptedLen % BLOCK_SIZE != 0) throw new IOException("Invalid encrypted block");
+        ExecutorService pool = pool();
+        long segmentCount = (encryptedLen + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+        int window = window();
+        Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+        try {
+            long submitted = 0;
+            while (submitted < segmentCount || !pending.isEmpty()) {
+                while (submitted < segmentCount && pending.size() < window) {
+                    long offset = submitted * SEGMENT_SIZE;
+                    int length = (int) Math.min(SEGMENT_SIZE, encryptedLen - offset);
+                    pending.add(pool.submit(() -> decryptSegment(channel, key, offset, length)));
+                    submitted++;
                 }
+
+                byte[] plain = awaitSegment(pending.poll());
+                boolean last = pending.isEmpty() && submitted == segmentCount;
+                out.write(plain, 0, last ? plain.length - strippedPadding(plain, 0, plain.length) : plain.length);
+                ThroughputEvent.add(plain.length);
+                progress.bytesProcessed(plain.length);
             }
-            success = true;
         } finally {
-            if (!success && overwrite && tempFile.exists()) {
-                tempFile.delete();
-            }
+            pending.forEach(future -> future.cancel(true));
+        }
+    }
+
+    // CBC decryption of one segment only needs the ciphertext block right before it, which is the IV for the first one
+    private byte[] decryptSegment(FileChannel channel, byte[] key, long offset, int length)
+            throws IOException, IllegalBlockSizeException {
+        byte[] cipher = new byte[BLOCK_SIZE + length];
+        readFully(channel, cipher, offset);
+
+        FeistelNetwork feistel = new FeistelNetwork(key);
+        byte[] plain = new byte[length];
+        feistel.decryptBlocks(cipher, BLOCK_SIZE, length / BLOCK_SIZE, plain, 0);
+        xor(plain, 0, cipher, 0, plain, 0, length);
+        return plain;
+    }
+
+    // Positional reads keep the channel position untouched, so they are safe next to streams and other threads
+    private void readFully(FileChannel channel, byte[] destination, long position) throws IOException {
+        if (mappedIo) {
+            channel.map(FileChannel.MapMode.READ_ONLY, position, destination.length).get(destination);
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(destination);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) throw new IOException("Unexpected end of file");
+        }
+    }
+
+    private InputStream openInput(FileChannel channel, long position, long length) throws IOException {
+        if (mappedIo) return new MappedInputStream(channel, position, length);
+        channel.position(position);
+        return new BufferedInputStream(Channels.newInputStream(channel));
+    }
+
+    private OutputStream openOutput(RandomAccessFile file, long capacity) throws IOException {
+        if (mappedIo) {
+            file.setLength(capacity);
+            return new MappedOutputStream(file.getChannel(), 0, capacity);
+        }
+        file.setLength(0);
+        return new BufferedOutputStream(Channels.newOutputStream(file.getChannel()));
+    }
+
+    private byte[] awaitSegment(Future<byte[]> future) throws IOException, IllegalBlockSizeException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Decryption interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof IllegalBlockSizeException ibs) throw ibs;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException("Segment decryption failed", cause);
         }
     }
 
@@ -246,19 +693,4 @@ public class Cryptor {
         }
         return salt;
     }
-
-    private void printProgressBar(long processed, long total) {
-        if (processed >= total) {
-            System.out.printf("\r[100%%] %d/%d bytes", total, total);
-            return;
-        }
-
-        long now = System.nanoTime();
-        long update_interval = 800L;
-        if (now - lastUpdateTime < update_interval * 1_000_000) return;
-        lastUpdateTime = now;
-        int percent = (int) (100 * processed / total);
-        System.out.printf("\r[%3d%%] %d/%d bytes", percent, processed, total);
-        System.out.flush();
-    }
-}
\ No newline at end of file
+}
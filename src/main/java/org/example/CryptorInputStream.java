@@ -0,0 +1,138 @@
+package org.example;
+
+import org.example.key.KeyVerifier;
+import org.example.modules.CtrKeystream;
+import org.example.modules.FeistelNetwork;
+
+import javax.crypto.IllegalBlockSizeException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.example.util.DataOperator.xor;
+
+/**
+ * Decrypts data in the layout written by {@link Cryptor#encryptFile} or {@link CryptorOutputStream}.
+ * The trailer sits at the end of the stream, so the mode has to be known up front and the key is only
+ * verified once the end is reached: a wrong key fails with an {@link IOException} from the final read.
+ * At most a couple of blocks plus the trailer are buffered.
+ */
+public class CryptorInputStream extends InputStream {
+    private static final int BLOCK_SIZE = FeistelNetwork.BLOCK_SIZE;
+    private static final int TRAILER_SIZE = 32 + 16;
+
+    private final InputStream in;
+    private final byte[] key;
+    private final FeistelNetwork feistel;
+    private final CipherMode mode;
+
+    private byte[] nonce;
+    private long baseCounter;
+    private long blockIndex;
+    private final byte[] chain = new byte[BLOCK_SIZE];
+
+    private final byte[] raw = new byte[2 * BLOCK_SIZE + TRAILER_SIZE];
+    private int rawCount;
+    private final byte[] plain = new byte[BLOCK_SIZE];
+    private final byte[] single = new byte[1];
+    private int plainPos;
+    private int plainLimit;
+    private boolean finished;
+
+    public CryptorInputStream(InputStream in, byte[] key, CipherMode mode) {
+        if (mode == CipherMode.SEGMENTED) throw new IllegalArgumentException("Segmented files need random access");
+        this.in = in;
+        this.key = key.clone();
+        this.feistel = new FeistelNetwork(key);
+        this.mode = mode;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        while (plainPos == plainLimit) {
+            if (finished) return -1;
+            nextBlock();
+        }
+        int n = Math.min(len, plainLimit - plainPos);
+        System.arraycopy(plain, plainPos, b, off, n);
+        plainPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return plainLimit - plainPos;
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        Arrays.fill(key, (byte) 0);
+        in.close();
+    }
+
+    private void nextBlock() throws IOException {
+        if (nonce == null) {
+            nonce = in.readNBytes(BLOCK_SIZE);
+            if (nonce.length != BLOCK_SIZE) throw new EOFException("Invalid file format");
+            baseCounter = CtrKeystream.counterOf(nonce);
+            System.arraycopy(nonce, 0, chain, 0, BLOCK_SIZE);
+        }
+
+        rawCount += in.readNBytes(raw, rawCount, raw.length - rawCount);
+        plainPos = 0;
+        try {
+            if (rawCount > BLOCK_SIZE + TRAILER_SIZE) {
+                plainLimit = decrypt(BLOCK_SIZE);
+                shift(BLOCK_SIZE);
+                return;
+            }
+            finish();
+        } catch (IllegalBlockSizeException e) {
+            throw new IOException("Illegal block size: " + e.getMessage(), e);
+        }
+    }
+
+    // The stream ended: what is left is the final (partial) ciphertext block followed by the trailer
+    private void finish() throws IOException, IllegalBlockSizeException {
+        if (rawCount < TRAILER_SIZE) throw new EOFException("Invalid file format");
+        int remaining = rawCount - TRAILER_SIZE;
+        byte[] verifier = Arrays.copyOfRange(raw, remaining, remaining + 32);
+        if (!new KeyVerifier().verifyKey(key, verifier, mode.verifierContext())) {
+            throw new IOException("Invalid key");
+        }
+
+        if (mode == CipherMode.CTR) {
+            plainLimit = remaining == 0 ? 0 : decrypt(remaining);
+        } else {
+            if (remaining != BLOCK_SIZE) throw new IOException("Invalid encrypted block");
+            plainLimit = decrypt(BLOCK_SIZE) - Cryptor.strippedPadding(plain, 0, BLOCK_SIZE);
+        }
+        rawCount = 0;
+        finished = true;
+    }
+
+    private int decrypt(int length) throws IllegalBlockSizeException {
+        if (mode == CipherMode.CTR) {
+            CtrKeystream.keystreamBlock(feistel, nonce, baseCounter + blockIndex++, plain, 0);
+            xor(raw, 0, plain, 0, plain, 0, length);
+        } else {
+            feistel.decryptBlock(raw, 0, plain, 0);
+            xor(plain, 0, chain, 0, plain, 0, BLOCK_SIZE);
+            System.arraycopy(raw, 0, chain, 0, BLOCK_SIZE);
+        }
+        return length;
+    }
+
+    private void shift(int n) {
+        System.arraycopy(raw, n, raw, 0, rawCount - n);
+        rawCount -= n;
+    }
+}
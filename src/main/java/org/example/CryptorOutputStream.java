@@ -0,0 +1,119 @@
+package org.example;
+
+import org.example.key.KeyVerifier;
+import org.example.modules.CtrKeystream;
+import org.example.modules.FeistelNetwork;
+
+import javax.crypto.IllegalBlockSizeException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.example.util.DataOperator.xor;
+
+/**
+ * Encrypts everything written to it into the same layout as {@link Cryptor#encryptFile}:
+ * IV, ciphertext, key verifier and salt. Only one block of plaintext is buffered; the padding block
+ * and the trailer are written on {@link #close()}.
+ */
+public class CryptorOutputStream extends OutputStream {
+    private static final int BLOCK_SIZE = FeistelNetwork.BLOCK_SIZE;
+
+    private final OutputStream out;
+    private final FeistelNetwork feistel;
+    private final CipherMode mode;
+    private final byte[] verifier;
+    private final byte[] salt;
+    private final byte[] nonce;
+    private final long baseCounter;
+
+    private final byte[] chain;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private final byte[] keystream = new byte[BLOCK_SIZE];
+    private final byte[] single = new byte[1];
+    private int count;
+    private long blockIndex;
+    private boolean headerWritten;
+    private boolean closed;
+
+    public CryptorOutputStream(OutputStream out, byte[] key, byte[] salt, byte[] iv, CipherMode mode) {
+        if (mode == CipherMode.SEGMENTED) throw new IllegalArgumentException("Segmented files need random access");
+        if (iv.length != BLOCK_SIZE) throw new IllegalArgumentException("IV must be " + BLOCK_SIZE + " bytes");
+        this.verifier = new KeyVerifier().createKeyVerifier(key, mode.verifierContext());
+        if (verifier == null) throw new IllegalArgumentException("Failed to create key verifier");
+        this.out = out;
+        this.feistel = new FeistelNetwork(key);
+        this.mode = mode;
+        this.salt = salt.clone();
+        this.nonce = iv.clone();
+        this.baseCounter = CtrKeystream.counterOf(iv);
+        this.chain = iv.clone();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) throw new IOException("Stream closed");
+        writeHeader();
+        while (len > 0) {
+            int n = Math.min(len, BLOCK_SIZE - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+            if (count == BLOCK_SIZE) {
+                encryptBlock(BLOCK_SIZE);
+                count = 0;
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        try (out) {
+            writeHeader();
+            if (mode == CipherMode.CTR) {
+                if (count > 0) encryptBlock(count);
+            } else {
+                Arrays.fill(block, count, BLOCK_SIZE, (byte) (BLOCK_SIZE - count));
+                encryptBlock(BLOCK_SIZE);
+            }
+            out.write(verifier);
+            out.write(salt);
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        if (headerWritten) return;
+        out.write(nonce);
+        headerWritten = true;
+    }
+
+    private void encryptBlock(int length) throws IOException {
+        try {
+            if (mode == CipherMode.CTR) {
+                CtrKeystream.keystreamBlock(feistel, nonce, baseCounter + blockIndex++, keystream, 0);
+                xor(block, 0, keystream, 0, block, 0, length);
+                out.write(block, 0, length);
+            } else {
+                xor(block, 0, chain, 0, chain, 0, BLOCK_SIZE);
+                feistel.encryptBlock(chain, 0, chain, 0);
+                out.write(chain);
+            }
+        } catch (IllegalBlockSizeException e) {
+            throw new IOException("Illegal block size: " + e.getMessage(), e);
+        }
+    }
+}
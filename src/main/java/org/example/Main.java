@@ -4,11 +4,21 @@ import org.example.commands.DecryptDirCommand;
 import org.example.commands.DecryptFileCommand;
 import org.example.commands.EncryptDirCommand;
 import org.example.commands.EncryptFileCommand;
+import org.example.events.FlightRecording;
+import org.example.key.KeyCache;
+import org.example.key.KeyGenerator;
+import org.example.util.BBSRandom;
+import org.example.util.BlumParameters;
+import jdk.jfr.Recording;
 import picocli.CommandLine;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigInteger;
+import java.nio.file.Path;
+import java.time.Duration;
 
 @CommandLine.Command(name = "crypto-scam", mixinStandardHelpOptions = true, description = "Crypt files and directories", subcommands = {
         EncryptFileCommand.class,
@@ -17,28 +27,119 @@ import java.io.InputStreamReader;
         DecryptDirCommand.class
 })
 public class Main implements Runnable {
+    private static final int KEY_CACHE_SIZE = 64;
+    private static final Duration KEY_CACHE_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private final KeyCache keyCache;
+
+    @CommandLine.Option(names = {"--bbs-params"}, description = "File keeping the BBS modulus between runs, created when missing")
+    Path bbsParams;
+
+    @CommandLine.Option(names = {"--regenerate-bbs-params"}, description = "Write a new BBS modulus to the --bbs-params file")
+    boolean regenerateBbsParams;
+
+    @CommandLine.Option(names = {"--jfr"}, paramLabel = "<file>", description = "Write a Java Flight Recorder recording of the command to this file")
+    Path jfrFile;
+
+    public Main() {
+        this(null);
+    }
+
+    /**
+     * @param keyCache keys shared by the commands run through this instance, or {@code null} to derive every time
+     */
+    public Main(KeyCache keyCache) {
+        this.keyCache = keyCache;
+    }
+
+    public KeyGenerator keyGenerator() {
+        return new KeyGenerator(keyCache);
+    }
+
     @Override
     public void run() {
         CommandLine.usage(this, System.out);
     }
 
+    // Global options are applied before the subcommand runs; the modulus itself is only read when randomness is needed
+    private int execute(CommandLine.ParseResult parseResult) {
+        if (regenerateBbsParams && bbsParams == null) {
+            throw new CommandLine.ParameterException(parseResult.commandSpec().commandLine(),
+                    "--regenerate-bbs-params requires --bbs-params");
+        }
+        if (bbsParams != null) {
+            Path file = bbsParams;
+            boolean applied;
+            if (regenerateBbsParams) {
+                try {
+                    BigInteger modulus = BlumParameters.regenerate(file);
+                    System.out.println("Generated new BBS parameters in " + file);
+                    applied = BBSRandom.useSharedModulus(() -> modulus);
+                } catch (IOException e) {
+                    System.err.println("Failed to write BBS parameters: " + e.getMessage());
+                    return 1;
+                }
+            } else {
+                try {
+                    applied = BBSRandom.useSharedModulus(() -> BlumParameters.loadOrCreateUnchecked(file));
+                } catch (UncheckedIOException e) {
+                    System.err.println("Failed to read BBS parameters: " + e.getCause().getMessage());
+                    return 1;
+                }
+            }
+            // The shared generator keeps its modulus for the life of the process, e.g. across stdin commands, so
+            // repeating the same parameters is fine but a different modulus cannot take effect
+            if (!applied) {
+                System.err.println("BBS parameters from " + file + " not applied: the random generator already uses a different modulus");
+                return 1;
+            }
+        }
+        if (jfrFile == null) {
+            FlightRecording.registerIfRecording();
+            return new CommandLine.RunLast().execute(parseResult);
+        }
+
+        Recording recording;
+        try {
+            recording = FlightRecording.start(jfrFile);
+        } catch (IOException e) {
+            System.err.println("Failed to start flight recording: " + e.getMessage());
+            return 1;
+        }
+        try {
+            return new CommandLine.RunLast().execute(parseResult);
+        } finally {
+            recording.stop();
+            recording.close();
+            System.out.println("Flight recording written to " + jfrFile);
+        }
+    }
+
+    private static CommandLine commandLine(Main main) {
+        return new CommandLine(main).setExecutionStrategy(main::execute);
+    }
+
     public static void main(String[] args) {
         int exitCode;
         if (args.length == 0 && System.console() == null) {
+            // Commands read from stdin share derived keys, since the same pass phrase and salt tend to repeat
+            KeyCache keyCache = new KeyCache(KEY_CACHE_SIZE, KEY_CACHE_IDLE_TIMEOUT);
             try (BufferedReader reader = new BufferedReader(new InputStreamReader(System.in))) {
                 String line;
                 while ((line = reader.readLine()) != null) {
                     if (line.trim().equalsIgnoreCase("exit")) break;
 
                     String[] commandArgs = line.trim().split("\\s+");
-                    exitCode = new CommandLine(new Main()).execute(commandArgs);
+                    exitCode = commandLine(new Main(keyCache)).execute(commandArgs);
                 }
             } catch (IOException e) {
                 System.err.println("Ошибка чтения из stdin: " + e.getMessage());
                 System.exit(1);
+            } finally {
+                keyCache.clear();
             }
         } else {
-            exitCode = new CommandLine(new Main()).execute(args);
+            exitCode = commandLine(new Main()).execute(args);
             System.exit(exitCode);
         }
     }
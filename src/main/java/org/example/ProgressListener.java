@@ -0,0 +1,31 @@
+package org.example;
+
+import java.io.File;
+
+/**
+ * Receives the progress of {@link Cryptor} file operations. {@link #bytesProcessed} is called once per pipeline
+ * buffer or segment, not per block, and from pool threads when work runs in parallel; a listener shared between
+ * cryptors sees calls for several files at once, so implementations must be thread-safe and cheap.
+ */
+public interface ProgressListener {
+    /**
+     * Discards all progress; the default of every cryptor.
+     */
+    ProgressListener NONE = new ProgressListener() {
+    };
+
+    /**
+     * A file is about to be processed; {@code totalBytes} is the sum that {@link #bytesProcessed} will reach for it.
+     */
+    default void fileStarted(File file, long totalBytes) {
+    }
+
+    default void bytesProcessed(long bytes) {
+    }
+
+    /**
+     * Processing of {@code file} ended, whether it succeeded or not.
+     */
+    default void fileFinished(File file) {
+    }
+}
@@ -0,0 +1,110 @@
+package org.example;
+
+import org.example.modules.FeistelNetwork;
+
+import javax.crypto.IllegalBlockSizeException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+/**
+ * Read-only plaintext view of a {@link CipherMode#SEGMENTED} file. A read only decrypts the segments it touches;
+ * the last decrypted segment is kept, so sequential reads decrypt every segment once.
+ * Not thread-safe, like other channels with a position.
+ */
+public class SegmentedChannel implements SeekableByteChannel {
+    private static final int BLOCK_SIZE = FeistelNetwork.BLOCK_SIZE;
+
+    private final FileChannel channel;
+    private final SegmentedContainer container;
+    private final FeistelNetwork feistel;
+    private final byte[] segment;
+    private final byte[] chain = new byte[BLOCK_SIZE];
+    private final byte[] scratch = new byte[FeistelNetwork.BATCH_BLOCKS * BLOCK_SIZE];
+    private int loadedSegment = -1;
+    private int loadedLength;
+    private long position;
+
+    SegmentedChannel(FileChannel channel, SegmentedContainer container, byte[] key) {
+        this.channel = channel;
+        this.container = container;
+        this.feistel = new FeistelNetwork(key);
+        this.segment = new byte[container.segmentSize() + BLOCK_SIZE];
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= container.plainLength()) return -1;
+
+        int total = 0;
+        while (dst.hasRemaining() && position < container.plainLength()) {
+            int index = (int) (position / container.segmentSize());
+            load(index);
+            int inSegment = (int) (position - (long) index * container.segmentSize());
+            int n = Math.min(dst.remaining(), loadedLength - inSegment);
+            dst.put(segment, inSegment, n);
+            position += n;
+            total += n;
+        }
+        return total;
+    }
+
+    private void load(int index) throws IOException {
+        if (index == loadedSegment) return;
+        loadedSegment = -1;
+        try {
+            loadedLength = container.decryptSegment(channel, feistel, index, segment, chain, scratch);
+        } catch (IllegalBlockSizeException e) {
+            throw new IOException("Failed to decrypt segment " + index, e);
+        }
+        loadedSegment = index;
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SegmentedChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) throw new IllegalArgumentException("Negative position");
+        position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return container.plainLength();
+    }
+
+    @Override
+    public SegmentedChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!channel.isOpen()) throw new ClosedChannelException();
+    }
+}
@@ -0,0 +1,248 @@
+package org.example;
+
+import org.example.events.ThroughputEvent;
+import org.example.modules.CbcCipher;
+import org.example.modules.CtrKeystream;
+import org.example.modules.FeistelNetwork;
+
+import javax.crypto.IllegalBlockSizeException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+/**
+ * Layout of {@link CipherMode#SEGMENTED} files. The plaintext is cut into fixed-size segments that are CBC-encrypted
+ * independently, each with its own IV derived from the file nonce and the segment number, so any segment can be
+ * decrypted without touching the others:
+ * <pre>
+ * [nonce 128][segment 0] ... [segment n-1][offsets n*8][plain length 8][segment size 4][segment count 4][trailer]
+ * </pre>
+ * The trailer holds the verifier and the salt, as in the other modes.
+ * Every segment is padded on its own, so a full segment takes {@code segment size + 128} bytes.
+ */
+final class SegmentedContainer {
+    static final int SEGMENT_SIZE = 1 << 20;
+    private static final int BLOCK_SIZE = FeistelNetwork.BLOCK_SIZE;
+    private static final int FOOTER_SIZE = 16;
+
+    private final byte[] nonce;
+    private final long plainLength;
+    private final int segmentSize;
+    private final long[] offsets;
+
+    private SegmentedContainer(byte[] nonce, long plainLength, int segmentSize, long[] offsets) {
+        this.nonce = nonce;
+        this.plainLength = plainLength;
+        this.segmentSize = segmentSize;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Reads the nonce and the segment index of a container whose index ends at {@code end}, where the trailer starts,
+     * and checks that they describe a consistent file.
+     */
+    static SegmentedContainer read(FileChannel channel, long end) throws IOException {
+        if (end < BLOCK_SIZE + FOOTER_SIZE) throw new IOException("Invalid segmented file");
+
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        readFully(channel, footer, end - FOOTER_SIZE);
+        long plainLength = footer.getLong(0);
+        int segmentSize = footer.getInt(8);
+        int segmentCount = footer.getInt(12);
+        if (plainLength < 0 || segmentSize <= 0 || segmentSize % BLOCK_SIZE != 0
+                || segmentCount != segmentCount(plainLength, segmentSize)) {
+            throw new IOException("Invalid segment index");
+        }
+
+        long indexStart = end - FOOTER_SIZE - 8L * segmentCount;
+        if (indexStart < BLOCK_SIZE) throw new IOException("Invalid segment index");
+        ByteBuffer index = ByteBuffer.allocate(8 * segmentCount);
+        readFully(channel, index, indexStart);
+        long[] offsets = new long[segmentCount];
+        index.flip().asLongBuffer().get(offsets);
+
+        SegmentedContainer container = new SegmentedContainer(new byte[BLOCK_SIZE], plainLength, segmentSize, offsets);
+        long expected = BLOCK_SIZE;
+        for (int segment = 0; segment < segmentCount; segment++) {
+            if (offsets[segment] != expected) throw new IOException("Invalid segment index");
+            expected += encryptedLength(container.plainLength(segment));
+        }
+        if (expected != indexStart) throw new IOException("Invalid segment index");
+
+        readFully(channel, ByteBuffer.wrap(container.nonce), 0);
+        return container;
+    }
+
+    long plainLength() {
+        return plainLength;
+    }
+
+    int segmentSize() {
+        return segmentSize;
+    }
+
+    int segmentCount() {
+        return offsets.length;
+    }
+
+    int plainLength(int segment) {
+        return (int) Math.min(segmentSize, plainLength - (long) segment * segmentSize);
+    }
+
+    /**
+     * Reads segment {@code segment} into {@code buffer} and decrypts it in place, returning the plaintext length.
+     * {@code buffer} must hold {@code segmentSize() + 128} bytes; {@code chain} is one block and {@code scratch}
+     * is at least one, see {@link CbcCipher#decrypt}.
+     */
+    int decryptSegment(FileChannel channel, FeistelNetwork feistel, int segment, byte[] buffer, byte[] chain, byte[] scratch)
+            throws IOException, IllegalBlockSizeException {
+        int length = plainLength(segment);
+        int encrypted = encryptedLength(length);
+        readFully(channel, ByteBuffer.wrap(buffer, 0, encrypted), offsets[segment]);
+
+        segmentIv(feistel, nonce, segment, chain);
+        CbcCipher.decrypt(feistel, chain, scratch, buffer, 0, encrypted);
+        int padding = buffer[encrypted - 1] & 0xFF;
+        if (encrypted - padding != length) throw new IOException("Invalid padding in segment " + segment);
+        return length;
+    }
+
+    /**
+     * Decrypts every segment into {@code out}, keeping up to {@code window} segments in flight on {@code executor}.
+     * Each task writes its plaintext at its own position, so segments may complete in any order.
+     * {@code progress} receives the plaintext length of every completed segment.
+     */
+    void decrypt(FileChannel in, FileChannel out, byte[] key, ExecutorService executor, int window, LongConsumer progress)
+            throws IOException, IllegalBlockSizeException {
+        out.truncate(0);
+        runSegments(segmentCount(), executor, window, progress, segment -> {
+            FeistelNetwork feistel = new FeistelNetwork(key);
+            byte[] buffer = new byte[segmentSize + BLOCK_SIZE];
+            int length = decryptSegment(in, feistel, segment, buffer, new byte[BLOCK_SIZE],
+                    new byte[FeistelNetwork.BATCH_BLOCKS * BLOCK_SIZE]);
+            writeFully(out, ByteBuffer.wrap(buffer, 0, length), (long) segment * segmentSize);
+            return length;
+        });
+        out.truncate(plainLength);
+    }
+
+    /**
+     * Writes a whole container for {@code length} bytes of {@code in} into {@code out}, up to the verifier, and
+     * returns the position where the trailer follows. {@code progress} is called as in {@link #decrypt}.
+     */
+    static long encrypt(FileChannel in, long length, FileChannel out, byte[] key, byte[] nonce,
+                        ExecutorService executor, int window, LongConsumer progress)
+            throws IOException, IllegalBlockSizeException {
+        int segmentCount = segmentCount(length, SEGMENT_SIZE);
+        long[] offsets = new long[segmentCount];
+        offsets[0] = BLOCK_SIZE;
+        for (int segment = 1; segment < segmentCount; segment++) {
+            offsets[segment] = offsets[segment - 1] + SEGMENT_SIZE + BLOCK_SIZE;
+        }
+        SegmentedContainer container = new SegmentedContainer(nonce, length, SEGMENT_SIZE, offsets);
+
+        out.truncate(0);
+        writeFully(out, ByteBuffer.wrap(nonce), 0);
+        runSegments(segmentCount, executor, window, progress, segment -> {
+            int plain = container.plainLength(segment);
+            byte[] buffer = new byte[encryptedLength(plain)];
+            readFully(in, ByteBuffer.wrap(buffer, 0, plain), (long) segment * SEGMENT_SIZE);
+            Arrays.fill(buffer, plain, buffer.length, (byte) (buffer.length - plain));
+
+            FeistelNetwork feistel = new FeistelNetwork(key);
+            byte[] chain = new byte[BLOCK_SIZE];
+            segmentIv(feistel, nonce, segment, chain);
+            CbcCipher.encrypt(feistel, chain, buffer, 0, buffer.length);
+            writeFully(out, ByteBuffer.wrap(buffer), offsets[segment]);
+            return plain;
+        });
+
+        int last = segmentCount - 1;
+        long indexStart = offsets[last] + encryptedLength(container.plainLength(last));
+        ByteBuffer index = ByteBuffer.allocate(8 * segmentCount + FOOTER_SIZE);
+        index.asLongBuffer().put(offsets);
+        index.position(8 * segmentCount);
+        index.putLong(length).putInt(SEGMENT_SIZE).putInt(segmentCount).flip();
+        writeFully(out, index, indexStart);
+        return indexStart + index.capacity();
+    }
+
+    /**
+     * IV of a segment: the counter-mode keystream block of the file nonce at the segment number.
+     */
+    private static void segmentIv(FeistelNetwork feistel, byte[] nonce, int segment, byte[] out)
+            throws IllegalBlockSizeException {
+        CtrKeystream.keystreamBlock(feistel, nonce, CtrKeystream.counterOf(nonce) + segment, out, 0);
+    }
+
+    // An empty file still gets one segment holding a single padding block
+    private static int segmentCount(long plainLength, int segmentSize) {
+        long count = Math.max(1, (plainLength + segmentSize - 1) / segmentSize);
+        if (count > Integer.MAX_VALUE / 8) throw new IllegalArgumentException("File is too large");
+        return (int) count;
+    }
+
+    private static int encryptedLength(int plainLength) {
+        return (plainLength / BLOCK_SIZE + 1) * BLOCK_SIZE;
+    }
+
+    private interface SegmentTask {
+        int run(int segment) throws IOException, IllegalBlockSizeException;
+    }
+
+    private static void runSegments(int segmentCount, ExecutorService executor, int window, LongConsumer progress,
+                                    SegmentTask task) throws IOException, IllegalBlockSizeException {
+        Deque<Future<Integer>> pending = new ArrayDeque<>();
+        try {
+            int submitted = 0;
+            while (submitted < segmentCount || !pending.isEmpty()) {
+                while (submitted < segmentCount && pending.size() < window) {
+                    int segment = submitted++;
+                    pending.add(executor.submit(() -> task.run(segment)));
+                }
+                int processed = await(pending.poll());
+                ThroughputEvent.add(processed);
+                progress.accept(processed);
+            }
+        } finally {
+            pending.forEach(future -> future.cancel(true));
+        }
+    }
+
+    private static int await(Future<Integer> future) throws IOException, IllegalBlockSizeException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Segment processing interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof IllegalBlockSizeException ibs) throw ibs;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException("Segment processing failed", cause);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, start + buffer.position()) < 0) throw new IOException("Unexpected end of file");
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        long start = position - buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, start + buffer.position());
+        }
+    }
+}
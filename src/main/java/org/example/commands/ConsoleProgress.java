@@ -0,0 +1,91 @@
+package org.example.commands;
+
+import org.example.ProgressListener;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress line on the console. Cipher threads only add to counters; a scheduled thread renders the line, and only
+ * when something changed. With more than one file the line shows the whole run, e.g. all files of a directory.
+ */
+class ConsoleProgress implements ProgressListener, AutoCloseable {
+    private static final Duration INTERVAL = Duration.ofMillis(800);
+
+    private final PrintStream out;
+    private final LongAdder processed = new LongAdder();
+    private final LongAdder total = new LongAdder();
+    private final LongAdder filesStarted = new LongAdder();
+    private final LongAdder filesFinished = new LongAdder();
+    private final ScheduledExecutorService renderer;
+    private volatile int expectedFiles;
+    private long lastRendered;
+
+    ConsoleProgress(PrintStream out) {
+        this.out = out;
+        this.renderer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "progress-renderer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        renderer.scheduleAtFixedRate(this::render, INTERVAL.toMillis(), INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Number of files the run will process, shown next to the finished count.
+     */
+    void expectFiles(int files) {
+        this.expectedFiles = files;
+    }
+
+    @Override
+    public void fileStarted(File file, long totalBytes) {
+        total.add(totalBytes);
+        filesStarted.increment();
+    }
+
+    @Override
+    public void bytesProcessed(long bytes) {
+        processed.add(bytes);
+    }
+
+    @Override
+    public void fileFinished(File file) {
+        filesFinished.increment();
+    }
+
+    private synchronized void render() {
+        long done = processed.sum();
+        if (done == lastRendered) return;
+        lastRendered = done;
+
+        long all = Math.max(done, total.sum());
+        int percent = all == 0 ? 100 : (int) (100 * done / all);
+        long files = Math.max(expectedFiles, filesStarted.sum());
+        if (files > 1) {
+            out.printf("\r[%3d%%] %d/%d bytes, %d/%d files", percent, done, all, filesFinished.sum(), files);
+        } else {
+            out.printf("\r[%3d%%] %d/%d bytes", percent, done, all);
+        }
+        out.flush();
+    }
+
+    /**
+     * Stops rendering and prints the final state on its own line, unless nothing was processed.
+     */
+    @Override
+    public void close() {
+        renderer.shutdownNow();
+        synchronized (this) {
+            if (processed.sum() == 0) return;
+            lastRendered = -1;
+            render();
+            out.println();
+        }
+    }
+}
@@ -1,17 +1,22 @@
 package org.example.commands;
 
 import org.example.Cryptor;
+import org.example.Main;
+import org.example.key.KeyCache;
 import org.example.key.KeyGenerator;
 import picocli.CommandLine;
 
-import javax.crypto.IllegalBlockSizeException;
 import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 @CommandLine.Command(name = "decrypt-dir", description = "Decrypt directory recursively")
 public class DecryptDirCommand implements Runnable {
+    @CommandLine.ParentCommand
+    Main parent;
+
     @CommandLine.Option(names = {"-d", "--directory"}, required = true, description = "Encrypted directory")
     String directory;
 
@@ -21,10 +26,15 @@ public class DecryptDirCommand implements Runnable {
     @CommandLine.Option(names = {"-p", "--pass-phrase"}, required = true, description = "Pass phrase")
     String passphrase;
 
+    @CommandLine.Option(names = {"-t", "--threads", "--parallelism"}, defaultValue = "1", description = "Files processed concurrently")
+    int threads;
+
+    private static final int KEY_CACHE_SIZE = 16;
+    private static final Duration KEY_CACHE_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
     @Override
     public void run() {
-        Cryptor cryptor = new Cryptor();
-        KeyGenerator generator = new KeyGenerator();
+        KeyGenerator generator = parent.keyGenerator();
 
         try {
             File inputDir = new File(directory);
@@ -34,42 +44,41 @@ public class DecryptDirCommand implements Runnable {
                 throw new IllegalArgumentException("Provided path is not a directory.");
             }
 
-            List<File> files = listFilesRecursively(inputDir);
+            List<File> files = DirectoryRunner.listFilesRecursively(inputDir);
+            // Files encrypted with a master key share the salt, so the pass phrase is only stretched once for them;
+            // per-file salts just cycle through the few entries
+            KeyCache keys = new KeyCache(KEY_CACHE_SIZE, KEY_CACHE_IDLE_TIMEOUT);
 
-            for (File file : files) {
-                byte[] salt = cryptor.readSalt(file);
-                byte[] key = generator.generateKey(passphrase, salt, 256 / 8);
+            ConsoleProgress progress = new ConsoleProgress(System.out);
+            progress.expectFiles(files.size());
 
-                String relativePath = inputDir.toPath().relativize(file.toPath()).toString();
-                File outputFile = new File(outDir, relativePath);
-                outputFile.getParentFile().mkdirs();
+            Map<File, String> failures;
+            try (progress) {
+                failures = new DirectoryRunner(threads).run(files, () -> {
+                    Cryptor cryptor = new Cryptor();
+                    cryptor.setProgressListener(progress);
+                    return cryptor;
+                }, (cryptor, file) -> {
+                    byte[] salt = cryptor.readSalt(file);
+                    byte[] key = keys.get(passphrase, salt, 256 / 8, () -> generator.generateKey(passphrase, salt, 256 / 8));
 
-                try {
-                    cryptor.decryptFile(file, outputFile, key);
-                } catch (IllegalArgumentException ia) {
-                    System.err.println("Unable to decrypt file " + file.getPath() + ": " + ia.getMessage());
-                } catch (IllegalBlockSizeException | IOException l) {
-                    System.err.println("Error decrypting file " + file.getPath() + ": " + l.getMessage());
-                }
+                    String relativePath = inputDir.toPath().relativize(file.toPath()).toString();
+                    File outputFile = new File(outDir, relativePath);
+                    outputFile.getParentFile().mkdirs();
+
+                    try {
+                        cryptor.decryptFile(file, outputFile, key);
+                    } finally {
+                        if (key != null) Arrays.fill(key, (byte) 0);
+                    }
+                });
+            } finally {
+                keys.clear();
             }
+            DirectoryRunner.report(failures, "decrypt");
             System.out.println("Directory has been decrypted.");
         } catch (Exception e) {
             System.err.println("Error decrypting directory: " + e.getMessage());
         }
     }
-
-    private List<File> listFilesRecursively(File dir) {
-        List<File> fileList = new ArrayList<>();
-        File[] files = dir.listFiles();
-        if (files == null) return fileList;
-
-        for (File file : files) {
-            if (file.isDirectory()) {
-                fileList.addAll(listFilesRecursively(file));
-            } else {
-                fileList.add(file);
-            }
-        }
-        return fileList;
-    }
 }
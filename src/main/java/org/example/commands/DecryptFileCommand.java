@@ -1,15 +1,20 @@
 package org.example.commands;
 
 import org.example.Cryptor;
+import org.example.Main;
 import org.example.key.KeyGenerator;
 import picocli.CommandLine;
 
 import javax.crypto.IllegalBlockSizeException;
 import java.io.File;
 import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
 
 @CommandLine.Command(name="decrypt-file", description = "Decrypt file command")
 public class DecryptFileCommand implements Runnable {
+    @CommandLine.ParentCommand
+    Main parent;
+
     @CommandLine.Option(names = {"-f", "--file"}, required = true, description = "File name")
     String filename;
 
@@ -19,23 +24,42 @@ public class DecryptFileCommand implements Runnable {
     @CommandLine.Option(names = {"-p", "--pass-phrase"}, required = true, description = "Pass phrase")
     String passphrase;
 
+    @CommandLine.Option(names = {"--mmap"}, description = "Use memory-mapped file I/O")
+    boolean mappedIo;
+
+    @CommandLine.Option(names = {"-t", "--threads"}, defaultValue = "1", description = "Decryption threads")
+    int threads;
+
     @Override
     public void run() {
         Cryptor cryptor = new Cryptor();
-        KeyGenerator generator = new KeyGenerator();
+        cryptor.setMappedIo(mappedIo);
+        KeyGenerator generator = parent.keyGenerator();
         File original = new File(filename);
         File encrypted = output_filename == null ? original : new File(output_filename);
 
         byte[] salt = cryptor.readSalt(original);
         byte[] key = generator.generateKey(passphrase, salt, 256/8);
 
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
         try {
-            cryptor.decryptFile(original, encrypted, key);
+            if (pool != null) {
+                cryptor.setExecutor(pool);
+                cryptor.setParallelism(threads);
+            }
+            System.out.println("Decrypting...");
+            try (ConsoleProgress progress = new ConsoleProgress(System.out)) {
+                cryptor.setProgressListener(progress);
+                cryptor.decryptFile(original, encrypted, key);
+            }
+            System.out.println("Decryption finished.");
         } catch (IllegalArgumentException ia) {
             System.err.println("Unable to decrypt file: " + ia.getMessage());
         }
         catch (IllegalBlockSizeException | IOException l) {
             System.err.println("Error: " + l.getMessage());
+        } finally {
+            if (pool != null) pool.shutdown();
         }
     }
 }
\ No newline at end of file
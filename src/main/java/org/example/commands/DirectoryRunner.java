@@ -0,0 +1,92 @@
+package org.example.commands;
+
+import org.example.Cryptor;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Spreads the files of a directory command over a bounded set of workers. Every worker owns one {@link Cryptor};
+ * a file is only submitted once a cryptor is free, so no more than {@code threads} files are processed at a time.
+ * Failures are collected per file instead of stopping the run.
+ */
+class DirectoryRunner {
+    interface FileAction {
+        void process(Cryptor cryptor, File file) throws Exception;
+    }
+
+    private final int threads;
+
+    DirectoryRunner(int threads) {
+        if (threads < 1) throw new IllegalArgumentException("Threads must be at least 1");
+        this.threads = threads;
+    }
+
+    /**
+     * Processes every file and returns the error message of each file that failed, ordered by path.
+     */
+    Map<File, String> run(List<File> files, Supplier<Cryptor> cryptors, FileAction action) throws InterruptedException {
+        BlockingQueue<Cryptor> idle = new ArrayBlockingQueue<>(threads);
+        for (int i = 0; i < threads; i++) idle.add(cryptors.get());
+
+        Map<File, String> failures = new ConcurrentSkipListMap<>();
+        ExecutorService executor = newExecutor(threads);
+        try {
+            for (File file : files) {
+                Cryptor cryptor = idle.take();
+                executor.execute(() -> {
+                    try {
+                        action.process(cryptor, file);
+                    } catch (Exception e) {
+                        failures.put(file, String.valueOf(e.getMessage()));
+                    } finally {
+                        idle.add(cryptor);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        return failures;
+    }
+
+    static void report(Map<File, String> failures, String action) {
+        if (failures.isEmpty()) return;
+        System.err.println("Failed to " + action + " " + failures.size() + " file(s):");
+        failures.forEach((file, message) -> System.err.println("  " + file.getPath() + ": " + message));
+    }
+
+    static List<File> listFilesRecursively(File dir) {
+        List<File> fileList = new ArrayList<>();
+        File[] files = dir.listFiles();
+        if (files == null) return fileList;
+
+        for (File file : files) {
+            if (file.isDirectory()) {
+                fileList.addAll(listFilesRecursively(file));
+            } else {
+                fileList.add(file);
+            }
+        }
+        return fileList;
+    }
+
+    // The build targets Java 17, so virtual threads are looked up at runtime and used when the JDK has them
+    private static ExecutorService newExecutor(int threads) {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(threads);
+        }
+    }
+}
@@ -1,15 +1,20 @@
 package org.example.commands;
 
+import org.example.CipherMode;
 import org.example.Cryptor;
+import org.example.Main;
 import org.example.key.KeyGenerator;
 import picocli.CommandLine;
 
 import java.io.File;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @CommandLine.Command(name = "encrypt-dir", description = "Encrypt directory recursively")
 public class EncryptDirCommand implements Runnable {
+    @CommandLine.ParentCommand
+    Main parent;
+
     @CommandLine.Option(names = {"-d", "--directory"}, required = true, description = "Directory to encrypt")
     String directory;
 
@@ -19,10 +24,18 @@ public class EncryptDirCommand implements Runnable {
     @CommandLine.Option(names = {"-p", "--pass-phrase"}, required = true, description = "Pass phrase")
     String passphrase;
 
+    @CommandLine.Option(names = {"-m", "--mode"}, defaultValue = "CBC", description = "Cipher mode: ${COMPLETION-CANDIDATES}")
+    CipherMode mode;
+
+    @CommandLine.Option(names = {"--master-key"}, description = "Stretch the pass phrase once per run and derive a subkey per file")
+    boolean masterKey;
+
+    @CommandLine.Option(names = {"-t", "--threads", "--parallelism"}, defaultValue = "1", description = "Files processed concurrently")
+    int threads;
+
     @Override
     public void run() {
-        Cryptor cryptor = new Cryptor();
-        KeyGenerator generator = new KeyGenerator();
+        KeyGenerator generator = parent.keyGenerator();
 
         try {
             File inputDir = new File(directory);
@@ -32,36 +45,38 @@ public class EncryptDirCommand implements Runnable {
                 throw new IllegalArgumentException("Provided path is not a directory.");
             }
 
-            List<File> files = listFilesRecursively(inputDir);
+            List<File> files = DirectoryRunner.listFilesRecursively(inputDir);
+            byte[] directorySalt = masterKey ? generator.generateSalt(128 / 8) : null;
+            byte[] directoryKey = masterKey ? generator.generateKey(passphrase, directorySalt, 256 / 8) : null;
 
-            for (File file : files) {
-                byte[] salt = generator.generateSalt(128 / 8);
-                byte[] key = generator.generateKey(passphrase, salt, 256 / 8);
+            ConsoleProgress progress = new ConsoleProgress(System.out);
+            progress.expectFiles(files.size());
 
-                String relativePath = inputDir.toPath().relativize(file.toPath()).toString();
-                File outputFile = new File(outDir, relativePath);
-                outputFile.getParentFile().mkdirs();
+            Map<File, String> failures;
+            try (progress) {
+                failures = new DirectoryRunner(threads).run(files, () -> {
+                    Cryptor cryptor = new Cryptor();
+                    cryptor.setMode(mode);
+                    cryptor.setProgressListener(progress);
+                    return cryptor;
+                }, (cryptor, file) -> {
+                    String relativePath = inputDir.toPath().relativize(file.toPath()).toString();
+                    File outputFile = new File(outDir, relativePath);
+                    outputFile.getParentFile().mkdirs();
 
-                cryptor.encryptFile(file, outputFile, key, salt);
+                    if (masterKey) {
+                        cryptor.encryptFile(file, outputFile, directoryKey, directorySalt, generator.generateSalt(128 / 8));
+                    } else {
+                        byte[] salt = generator.generateSalt(128 / 8);
+                        byte[] key = generator.generateKey(passphrase, salt, 256 / 8);
+                        cryptor.encryptFile(file, outputFile, key, salt);
+                    }
+                });
             }
-            System.out.println("Directory encrypted successfully.");
+            DirectoryRunner.report(failures, "encrypt");
+            System.out.println(failures.isEmpty() ? "Directory encrypted successfully." : "Directory encrypted with errors.");
         } catch (Exception e) {
             System.err.println("Error encrypting directory: " + e.getMessage());
         }
     }
-
-    private List<File> listFilesRecursively(File dir) {
-        List<File> fileList = new ArrayList<>();
-        File[] files = dir.listFiles();
-        if (files == null) return fileList;
-
-        for (File file : files) {
-            if (file.isDirectory()) {
-                fileList.addAll(listFilesRecursively(file));
-            } else {
-                fileList.add(file);
-            }
-        }
-        return fileList;
-    }
-}
\ No newline at end of file
+}
@@ -1,12 +1,18 @@
 package org.example.commands;
 
+import org.example.CipherMode;
 import org.example.Cryptor;
+import org.example.Main;
 import org.example.key.KeyGenerator;
 import picocli.CommandLine;
 import java.io.File;
+import java.util.concurrent.ForkJoinPool;
 
 @CommandLine.Command(name="encrypt-file", description = "Encrypt file command")
 public class EncryptFileCommand implements Runnable {
+    @CommandLine.ParentCommand
+    Main parent;
+
     @CommandLine.Option(names = {"-f", "--file"}, required = true, description = "File name")
     String filename;
 
@@ -16,20 +22,43 @@ public class EncryptFileCommand implements Runnable {
     @CommandLine.Option(names = {"-p", "--pass-phrase"}, description = "Pass phrase")
     String passphrase;
 
+    @CommandLine.Option(names = {"--mmap"}, description = "Use memory-mapped file I/O")
+    boolean mappedIo;
+
+    @CommandLine.Option(names = {"-m", "--mode"}, defaultValue = "CBC", description = "Cipher mode: ${COMPLETION-CANDIDATES}")
+    CipherMode mode;
+
+    @CommandLine.Option(names = {"-t", "--threads"}, defaultValue = "1", description = "Encryption threads for CTR and segmented modes")
+    int threads;
+
     @Override
     public void run() {
         Cryptor cryptor = new Cryptor();
-        KeyGenerator generator = new KeyGenerator();
+        cryptor.setMappedIo(mappedIo);
+        cryptor.setMode(mode);
+        KeyGenerator generator = parent.keyGenerator();
         byte[] salt = generator.generateSalt(128/8);
         byte[] key = generator.generateKey(passphrase, salt, 256/8);
 
+        ForkJoinPool pool = threads > 1 ? new ForkJoinPool(threads) : null;
         try {
+            if (pool != null) {
+                cryptor.setExecutor(pool);
+                cryptor.setParallelism(threads);
+            }
             File original = new File(filename);
             File encrypted = output_filename == null ? original : new File(output_filename);
 
-            cryptor.encryptFile(original, encrypted, key, salt);
+            System.out.println("Encrypting: " + original.getName());
+            try (ConsoleProgress progress = new ConsoleProgress(System.out)) {
+                cryptor.setProgressListener(progress);
+                cryptor.encryptFile(original, encrypted, key, salt);
+            }
+            System.out.println("Encryption completed!");
         } catch (Exception e) {
             System.err.println("Error: " + e.getMessage());
+        } finally {
+            if (pool != null) pool.shutdown();
         }
     }
 }
\ No newline at end of file
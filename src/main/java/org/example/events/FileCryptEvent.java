@@ -0,0 +1,34 @@
+package org.example.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One file encrypted or decrypted by {@link org.example.Cryptor}, from opening the input to writing the trailer.
+ */
+@Name("org.example.FileCrypt")
+@Label("File Encryption")
+@Category({"Crypto-Scam", "Files"})
+@Description("Encryption or decryption of a single file")
+public class FileCryptEvent extends Event {
+    @Label("Operation")
+    public String operation;
+
+    @Label("Path")
+    public String path;
+
+    @Label("Mode")
+    public String mode;
+
+    @Label("Input Size")
+    @DataAmount
+    public long inputSize;
+
+    @Label("Output Size")
+    @DataAmount
+    public long outputSize;
+}
@@ -0,0 +1,45 @@
+package org.example.events;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+/**
+ * Flight recordings of the events in this package. The events are cheap when nothing records them: JFR leaves
+ * their methods empty until a recording enables them, and throughput is only counted into a {@code LongAdder}.
+ */
+public final class FlightRecording {
+    private FlightRecording() {
+    }
+
+    /**
+     * Starts a recording with the JDK "default" settings plus the events of this application, written to
+     * {@code destination} when the returned recording is stopped.
+     */
+    public static Recording start(Path destination) throws IOException {
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException("Failed to read JFR settings", e);
+        }
+        recording.setName("crypto-scam");
+        recording.setDestination(destination);
+        recording.setToDisk(true);
+        ThroughputEvent.register();
+        recording.start();
+        return recording;
+    }
+
+    /**
+     * Registers the periodic events when the JVM already records, e.g. when started with
+     * {@code -XX:StartFlightRecording}; otherwise the recorder is left uninitialized.
+     */
+    public static void registerIfRecording() {
+        if (FlightRecorder.isInitialized()) ThroughputEvent.register();
+    }
+}
@@ -0,0 +1,24 @@
+package org.example.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One PBKDF2 derivation; keys served from a {@link org.example.key.KeyCache} are not derived and not reported.
+ */
+@Name("org.example.KeyDerivation")
+@Label("Key Derivation")
+@Category({"Crypto-Scam", "Keys"})
+@Description("PBKDF2-HMAC-SHA256 derivation of a key from a pass phrase")
+public class KeyDerivationEvent extends Event {
+    @Label("Iterations")
+    public int iterations;
+
+    @Label("Key Length")
+    @DataAmount
+    public int keyLength;
+}
@@ -0,0 +1,27 @@
+package org.example.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * One {@link org.example.util.BBSRandom#nextBytes} call. With the prefetcher these mostly run on its background thread.
+ */
+@Name("org.example.RandomGeneration")
+@Label("BBS Generation")
+@Category({"Crypto-Scam", "Random"})
+@Description("Bytes drawn from a Blum Blum Shub generator")
+public class RandomGenerationEvent extends Event {
+    @Label("Length")
+    @DataAmount
+    public int length;
+
+    @Label("Bits per Squaring")
+    public int bitsPerSquaring;
+
+    @Label("Modulus Bits")
+    public int modulusBits;
+}
@@ -0,0 +1,63 @@
+package org.example.events;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Frequency;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bytes pushed through the ciphers since the previous event, emitted once a second while a recording runs.
+ * Cipher stages only bump a counter per buffer; the periodic hook is registered by {@link #register()}, because
+ * registering initializes the recorder and takes a few hundred milliseconds.
+ */
+@Name("org.example.Throughput")
+@Label("Cipher Throughput")
+@Category({"Crypto-Scam", "Files"})
+@Description("Bytes encrypted or decrypted during the last period")
+@Period("1 s")
+public class ThroughputEvent extends Event {
+    private static final LongAdder BYTES = new LongAdder();
+    private static boolean registered;
+    private static long lastEmit;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+
+    @Label("Rate")
+    @DataAmount
+    @Frequency
+    public long bytesPerSecond;
+
+    public static void add(long bytes) {
+        BYTES.add(bytes);
+    }
+
+    /**
+     * Starts emitting throughput events in recordings; later calls do nothing.
+     */
+    public static synchronized void register() {
+        if (registered) return;
+        registered = true;
+        lastEmit = System.nanoTime();
+        FlightRecorder.addPeriodicEvent(ThroughputEvent.class, ThroughputEvent::emit);
+    }
+
+    private static void emit() {
+        long now = System.nanoTime();
+        long elapsed = Math.max(1, now - lastEmit);
+        lastEmit = now;
+
+        ThroughputEvent event = new ThroughputEvent();
+        event.bytes = BYTES.sumThenReset();
+        event.bytesPerSecond = (long) (event.bytes * 1e9 / elapsed);
+        event.commit();
+    }
+}
@@ -0,0 +1,40 @@
+package org.example.key;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+
+/**
+ * HKDF with HMAC-SHA256 (RFC 5869). Expands an already stretched key into independent subkeys at the cost of a
+ * few HMACs, so only the master key has to go through PBKDF2.
+ */
+public final class Hkdf {
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int HASH_LENGTH = 32;
+
+    private Hkdf() {
+    }
+
+    public static byte[] derive(byte[] inputKey, byte[] salt, byte[] info, int length) {
+        if (length <= 0 || length > 255 * HASH_LENGTH) throw new IllegalArgumentException("Invalid output length");
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(salt.length == 0 ? new byte[HASH_LENGTH] : salt, ALGORITHM));
+            byte[] pseudoRandomKey = mac.doFinal(inputKey);
+
+            mac.init(new SecretKeySpec(pseudoRandomKey, ALGORITHM));
+            byte[] output = new byte[length];
+            byte[] block = new byte[0];
+            for (int offset = 0, counter = 1; offset < length; offset += HASH_LENGTH, counter++) {
+                mac.update(block);
+                mac.update(info);
+                mac.update((byte) counter);
+                block = mac.doFinal();
+                System.arraycopy(block, 0, output, offset, Math.min(HASH_LENGTH, length - offset));
+            }
+            return output;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HKDF derivation failed", e);
+        }
+    }
+}
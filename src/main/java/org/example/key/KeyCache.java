@@ -0,0 +1,165 @@
+package org.example.key;
+
+import org.example.util.DataOperator;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Bounded LRU cache of derived keys for long-running processes. Entries are looked up by a SHA-256 of
+ * (pass phrase, salt, key size), so pass phrases are not kept. Keys idle for longer than the timeout are dropped
+ * by a timer, so they do not outlive the timeout even when the cache is never used again, and every dropped key is
+ * zeroed. Callers always receive copies.
+ */
+public class KeyCache {
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "key-cache-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int maxEntries;
+    private final long idleTimeoutNanos;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    /** Derivations in progress, completed once their key is cached or has failed. */
+    private final Map<String, CompletableFuture<Void>> pending = new HashMap<>();
+    private ScheduledFuture<?> sweep;
+
+    private static final class Entry {
+        final byte[] key;
+        long lastAccess;
+
+        Entry(byte[] key, long lastAccess) {
+            this.key = key;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    public KeyCache(int maxEntries, Duration idleTimeout) {
+        if (maxEntries < 1) throw new IllegalArgumentException("Cache must hold at least one key");
+        this.maxEntries = maxEntries;
+        this.idleTimeoutNanos = idleTimeout.toNanos();
+    }
+
+    /**
+     * Returns the cached key for these parameters, deriving and caching it when absent. The derivation runs
+     * outside the lock, so a slow KDF does not block lookups of other keys; concurrent lookups of the same key wait
+     * for one derivation instead of repeating it. A {@code null} result is not cached.
+     */
+    public byte[] get(String passphrase, byte[] salt, int keySize, Supplier<byte[]> derivation) {
+        String id = fingerprint(passphrase, salt, keySize);
+        CompletableFuture<Void> derived;
+        while (true) {
+            CompletableFuture<Void> inFlight;
+            synchronized (this) {
+                long now = System.nanoTime();
+                evictIdle(now);
+                Entry entry = entries.get(id);
+                if (entry != null) {
+                    entry.lastAccess = now;
+                    return entry.key.clone();
+                }
+                inFlight = pending.get(id);
+                if (inFlight == null) {
+                    derived = new CompletableFuture<>();
+                    pending.put(id, derived);
+                    break;
+                }
+            }
+            inFlight.join();
+        }
+
+        byte[] key = null;
+        try {
+            key = derivation.get();
+        } finally {
+            // The key is cached before waiters are released, so they find it instead of deriving again
+            synchronized (this) {
+                pending.remove(id);
+                if (key != null) {
+                    Entry previous = entries.put(id, new Entry(key.clone(), System.nanoTime()));
+                    if (previous != null) Arrays.fill(previous.key, (byte) 0);
+                    while (entries.size() > maxEntries) {
+                        Iterator<Entry> eldest = entries.values().iterator();
+                        Arrays.fill(eldest.next().key, (byte) 0);
+                        eldest.remove();
+                    }
+                    scheduleSweep();
+                }
+            }
+            derived.complete(null);
+        }
+        return key;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Zeroes and drops every cached key.
+     */
+    public synchronized void clear() {
+        entries.values().forEach(entry -> Arrays.fill(entry.key, (byte) 0));
+        entries.clear();
+        if (sweep != null) {
+            sweep.cancel(false);
+            sweep = null;
+        }
+    }
+
+    // Entries are in access order, so the first one is the next to expire; the timer is re-armed for it after a sweep
+    private void scheduleSweep() {
+        if (sweep != null || entries.isEmpty()) return;
+        long expiry = entries.values().iterator().next().lastAccess + idleTimeoutNanos;
+        long delay = Math.max(0, expiry - System.nanoTime()) + 1;
+        sweep = SWEEPER.schedule(this::sweep, delay, TimeUnit.NANOSECONDS);
+    }
+
+    private synchronized void sweep() {
+        sweep = null;
+        evictIdle(System.nanoTime());
+        scheduleSweep();
+    }
+
+    private void evictIdle(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (now - entry.lastAccess <= idleTimeoutNanos) continue;
+            Arrays.fill(entry.key, (byte) 0);
+            iterator.remove();
+        }
+    }
+
+    // Length prefixes keep ("ab", "c") and ("a", "bc") apart
+    private static String fingerprint(String passphrase, byte[] salt, int keySize) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] pass = passphrase.getBytes(StandardCharsets.UTF_8);
+            digest.update(ByteBuffer.allocate(4).putInt(pass.length).array());
+            digest.update(pass);
+            digest.update(ByteBuffer.allocate(4).putInt(salt.length).array());
+            digest.update(salt);
+            digest.update(ByteBuffer.allocate(4).putInt(keySize).array());
+            Arrays.fill(pass, (byte) 0);
+            return DataOperator.bytesToHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
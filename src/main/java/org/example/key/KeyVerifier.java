@@ -2,28 +2,37 @@ package org.example.key;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 public class KeyVerifier {
+    private static final String DEFAULT_CONTEXT = "KEY_VERIFIER";
+
     public byte[] createKeyVerifier(byte[] key) {
+        return createKeyVerifier(key, DEFAULT_CONTEXT);
+    }
+    public byte[] createKeyVerifier(byte[] key, String context) {
         try {
             Mac hmac = Mac.getInstance("HmacSHA256");
             SecretKeySpec keySpec = new SecretKeySpec(key, "HmacSHA256");
             hmac.init(keySpec);
-            return hmac.doFinal("KEY_VERIFIER".getBytes());
+            return hmac.doFinal(context.getBytes(StandardCharsets.UTF_8));
         } catch (NoSuchAlgorithmException | InvalidKeyException e) {
             System.err.println("Error creating key verifier: " + e.getMessage());
         }
         return null;
     }
     public boolean verifyKey(byte[] candidateKey, byte[] storedVerifier) {
+        return verifyKey(candidateKey, storedVerifier, DEFAULT_CONTEXT);
+    }
+    public boolean verifyKey(byte[] candidateKey, byte[] storedVerifier, String context) {
         try{
             Mac hmac = Mac.getInstance("HmacSHA256");
             SecretKeySpec keySpec = new SecretKeySpec(candidateKey, "HmacSHA256");
             hmac.init(keySpec);
-            byte[] computedVerifier = hmac.doFinal("KEY_VERIFIER".getBytes());
+            byte[] computedVerifier = hmac.doFinal(context.getBytes(StandardCharsets.UTF_8));
 
             return MessageDigest.isEqual(computedVerifier, storedVerifier);
         } catch (NoSuchAlgorithmException | InvalidKeyException | IllegalArgumentException e) {
@@ -31,4 +40,4 @@ public class KeyVerifier {
         }
         return false;
     }
-}
\ No newline at end of file
+}
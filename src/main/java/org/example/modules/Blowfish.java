@@ -1,7 +1,8 @@
 package org.example.modules;
 
 public class Blowfish {
-    private final int[][] S_BOXES = {
+    /** Key-independent initial S-boxes; never modified, each instance mixes the key into its own copy. */
+    private static final int[][] BASE_S_BOXES = {
             {
                     0xd1310ba6, 0x98dfb5ac, 0x2ffd72db, 0xd01adfb7, 0xb8e1afed, 0x6a267e96,
                     0xba7c9045, 0xf12c7f99, 0x24a19947, 0xb3916cf7, 0x0801f2e2, 0x858efc16,
@@ -185,20 +186,26 @@ public class Blowfish {
             }
     };
     private static final int BLOCK_SIZE = 64;
+    private static final int BOX_COUNT = 4;
+
+    /** Keyed S-boxes laid out flat: box {@code i} occupies {@code [i * 256, i * 256 + 256)}. */
+    private final int[] S_BOXES = new int[BOX_COUNT * 256];
+
     public Blowfish(byte[] key) {
         init(key);
     }
     private void init(byte[] key) throws IllegalArgumentException {
         if (key.length < 8) throw new IllegalArgumentException("key must be at least 8 bytes");
         int keyPos = 0;
-        for (int i = 0; i < S_BOXES.length; i++) {
+        for (int i = 0; i < BOX_COUNT; i++) {
+            int[] base = BASE_S_BOXES[i];
             for (int j = 0; j < 256; j++) {
                 int keyPart = ((key[keyPos % key.length] & 0xFF) << 24) |
                         ((key[(keyPos + 1) % key.length] & 0xFF) << 16) |
                         ((key[(keyPos + 2) % key.length] & 0xFF) << 8) |
                         ((key[(keyPos + 3) % key.length] & 0xFF));
 
-                S_BOXES[i][j] ^= keyPart;
+                S_BOXES[i * 256 + j] = base[j] ^ keyPart;
                 keyPos = (keyPos + 4) % key.length;
             }
         }
@@ -208,45 +215,56 @@ public class Blowfish {
             throw new IllegalArgumentException("Block must be " + BLOCK_SIZE + " bytes");
         }
         byte[] result = new byte[BLOCK_SIZE];
-
-        for (int i = 0; i < BLOCK_SIZE; i += 4) {
-            byte[] word = new byte[]{
-                    block[i], block[i+1], block[i+2], block[i+3]
-            };
-            byte[] currentKey = new byte[]{
-                    roundKey[i % roundKey.length],
-                    roundKey[(i+1) % roundKey.length],
-                    roundKey[(i+2) % roundKey.length],
-                    roundKey[(i+3) % roundKey.length]
-            };
-            byte[] processedWord = processWord(word, currentKey);
-            System.arraycopy(processedWord, 0, result, i, 4);
-        }
-
+        applyF(block, 0, roundKey, 0, roundKey.length, result, 0);
         return result;
     }
 
-    private byte[] processWord(byte[] word, byte[] key) {
-        int a = word[0] & 0xFF;
-        int b = word[1] & 0xFF;
-        int c = word[2] & 0xFF;
-        int d = word[3] & 0xFF;
+    /**
+     * Same as {@link #applyF(byte[], byte[])} but reads the round key from {@code roundKey[keyOff..keyOff+keyLen)}
+     * and writes into {@code out} without allocating; in-place use is allowed.
+     */
+    public void applyF(byte[] block, int blockOff, byte[] roundKey, int keyOff, int keyLen, byte[] out, int outOff) {
+        for (int i = 0; i < BLOCK_SIZE; i += 4) {
+            int word = ((block[blockOff + i] & 0xFF) << 24) |
+                    ((block[blockOff + i + 1] & 0xFF) << 16) |
+                    ((block[blockOff + i + 2] & 0xFF) << 8) |
+                    (block[blockOff + i + 3] & 0xFF);
+
+            int keyWord = ((roundKey[keyOff + i % keyLen] & 0xFF) << 24) |
+                    ((roundKey[keyOff + (i + 1) % keyLen] & 0xFF) << 16) |
+                    ((roundKey[keyOff + (i + 2) % keyLen] & 0xFF) << 8) |
+                    (roundKey[keyOff + (i + 3) % keyLen] & 0xFF);
 
-        int sBoxIndex1 = a % S_BOXES.length;
-        int sBoxIndex2 = b % S_BOXES.length;
-        int sBoxIndex3 = c % S_BOXES.length;
-        int sBoxIndex4 = d % S_BOXES.length;
+            int result = applyF(word, keyWord);
+            out[outOff + i] = (byte) (result >>> 24);
+            out[outOff + i + 1] = (byte) (result >>> 16);
+            out[outOff + i + 2] = (byte) (result >>> 8);
+            out[outOff + i + 3] = (byte) result;
+        }
+    }
 
-        int result = (S_BOXES[sBoxIndex1][a] + S_BOXES[sBoxIndex2][b]) ^
-                S_BOXES[sBoxIndex3][c] + S_BOXES[sBoxIndex4][d];
+    /**
+     * Packed-word variant: word {@code w} of the block is keyed with {@code roundKey[keyOff + w % keyWords]}.
+     * Matches the byte variant for round keys whose length is a multiple of 4.
+     */
+    public void applyF(int[] block, int blockOff, int[] roundKey, int keyOff, int keyWords, int[] out, int outOff) {
+        for (int w = 0; w < BLOCK_SIZE / 4; w++) {
+            out[outOff + w] = applyF(block[blockOff + w], roundKey[keyOff + w % keyWords]);
+        }
+    }
 
-        int keyInt = ((key[0] & 0xFF) << 24) |
-                ((key[1] & 0xFF) << 16) |
-                ((key[2] & 0xFF) << 8) |
-                (key[3] & 0xFF);
+    /**
+     * F-function of a single big-endian 32-bit word.
+     */
+    public int applyF(int word, int keyWord) {
+        int a = word >>> 24;
+        int b = (word >>> 16) & 0xFF;
+        int c = (word >>> 8) & 0xFF;
+        int d = word & 0xFF;
 
-        result ^= keyInt;
-        return intToBytes(result);
+        int result = (S_BOXES[(a & 3) << 8 | a] + S_BOXES[(b & 3) << 8 | b]) ^
+                S_BOXES[(c & 3) << 8 | c] + S_BOXES[(d & 3) << 8 | d];
+        return result ^ keyWord;
     }
 
     public byte[] intToBytes(int value) {
@@ -257,4 +275,4 @@ public class Blowfish {
                 (byte) value
         };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,57 @@
+package org.example.modules;
+
+import javax.crypto.IllegalBlockSizeException;
+
+import static org.example.util.DataOperator.xor;
+
+/**
+ * In-place CBC over whole blocks of a buffer, with the chaining block carried by the caller between calls.
+ */
+public final class CbcCipher {
+    private static final int BLOCK_SIZE = FeistelNetwork.BLOCK_SIZE;
+
+    private CbcCipher() {
+    }
+
+    /**
+     * Encrypts {@code buffer[offset, offset + length)} in place. {@code chain} holds the previous ciphertext block
+     * (or the IV) and receives the last ciphertext block of this call.
+     */
+    public static void encrypt(FeistelNetwork feistel, byte[] chain, byte[] buffer, int offset, int length)
+            throws IllegalBlockSizeException {
+        if (length % BLOCK_SIZE != 0) throw new IllegalBlockSizeException("Length must be a multiple of 128 bytes");
+        byte[] prev = chain;
+        int prevOff = 0;
+        for (int i = offset; i < offset + length; i += BLOCK_SIZE) {
+            xor(buffer, i, prev, prevOff, buffer, i, BLOCK_SIZE);
+            feistel.encryptBlock(buffer, i, buffer, i);
+            prev = buffer;
+            prevOff = i;
+        }
+        if (length > 0) System.arraycopy(prev, prevOff, chain, 0, BLOCK_SIZE);
+    }
+
+    /**
+     * Decrypts {@code buffer[offset, offset + length)} in place. {@code chain} holds the ciphertext block preceding
+     * the range and receives the last ciphertext block of this call. {@code scratch} is a caller-owned buffer of at
+     * least one block that keeps the ciphertext of the blocks being decrypted; every
+     * {@link FeistelNetwork#BATCH_BLOCKS} blocks of it let that many blocks be decrypted together.
+     */
+    public static void decrypt(FeistelNetwork feistel, byte[] chain, byte[] scratch, byte[] buffer, int offset, int length)
+            throws IllegalBlockSizeException {
+        if (length % BLOCK_SIZE != 0) throw new IllegalBlockSizeException("Length must be a multiple of 128 bytes");
+        int batch = scratch.length / BLOCK_SIZE;
+        if (batch == 0) throw new IllegalArgumentException("Scratch must hold at least one block");
+
+        for (int i = offset; i < offset + length; ) {
+            int blocks = Math.min(batch, (offset + length - i) / BLOCK_SIZE);
+            int bytes = blocks * BLOCK_SIZE;
+            System.arraycopy(buffer, i, scratch, 0, bytes);
+            feistel.decryptBlocks(scratch, 0, blocks, buffer, i);
+            xor(buffer, i, chain, 0, buffer, i, BLOCK_SIZE);
+            xor(buffer, i + BLOCK_SIZE, scratch, 0, buffer, i + BLOCK_SIZE, bytes - BLOCK_SIZE);
+            System.arraycopy(scratch, bytes - BLOCK_SIZE, chain, 0, BLOCK_SIZE);
+            i += bytes;
+        }
+    }
+}
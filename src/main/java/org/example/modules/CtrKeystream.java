@@ -0,0 +1,137 @@
+package org.example.modules;
+
+import javax.crypto.IllegalBlockSizeException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import static org.example.util.DataOperator.xor;
+
+/**
+ * Counter-mode keystream over {@link FeistelNetwork}. Block {@code i} of the keystream is the encryption of the
+ * nonce whose last 8 bytes, read as a big-endian integer, are advanced by {@code i}. Segments of the keystream
+ * are computed on an executor ahead of their use, so applying it is a plain XOR.
+ */
+public class CtrKeystream implements AutoCloseable {
+    public static final int SEGMENT_SIZE = 1 << 20;
+    private static final int BLOCK_SIZE = FeistelNetwork.BLOCK_SIZE;
+
+    private final byte[] key;
+    private final byte[] nonce;
+    private final long baseCounter;
+    private final long segmentCount;
+    private final long length;
+    private final ExecutorService executor;
+    private final int window;
+    private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+
+    private long submitted;
+    private byte[] current;
+    private int currentPos;
+
+    /**
+     * @param length total number of keystream bytes that will be consumed, starting at block 0
+     * @param window number of segments computed ahead
+     */
+    public CtrKeystream(byte[] key, byte[] nonce, long length, ExecutorService executor, int window) {
+        if (nonce.length != BLOCK_SIZE) throw new IllegalArgumentException("Nonce must be " + BLOCK_SIZE + " bytes");
+        this.key = key;
+        this.nonce = nonce.clone();
+        this.baseCounter = counterOf(nonce);
+        this.length = length;
+        this.segmentCount = (length + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+        this.executor = executor;
+        this.window = Math.max(1, window);
+    }
+
+    /**
+     * XORs the next {@code length} keystream bytes into {@code data}.
+     */
+    public void apply(byte[] data, int offset, int length) throws IOException, IllegalBlockSizeException {
+        while (length > 0) {
+            if (current == null || currentPos == current.length) {
+                current = nextSegment();
+                currentPos = 0;
+            }
+            int n = Math.min(length, current.length - currentPos);
+            xor(data, offset, current, currentPos, data, offset, n);
+            currentPos += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    @Override
+    public void close() {
+        pending.forEach(future -> future.cancel(true));
+        pending.clear();
+    }
+
+    private byte[] nextSegment() throws IOException, IllegalBlockSizeException {
+        while (submitted < segmentCount && pending.size() < window) {
+            long segment = submitted++;
+            pending.add(executor.submit(() -> computeSegment(segment)));
+        }
+        Future<byte[]> future = pending.poll();
+        if (future == null) throw new IOException("Keystream exhausted");
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Keystream generation interrupted");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalBlockSizeException ibs) throw ibs;
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IOException("Keystream generation failed", cause);
+        }
+    }
+
+    /**
+     * Keystream for one segment, generated on its own {@link FeistelNetwork} since networks are not thread-safe.
+     */
+    private byte[] computeSegment(long segment) throws IllegalBlockSizeException {
+        long start = segment * SEGMENT_SIZE;
+        int segmentLength = (int) Math.min(SEGMENT_SIZE, length - start);
+        byte[] keystream = new byte[(segmentLength + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE];
+        FeistelNetwork feistel = new FeistelNetwork(key);
+        long firstBlock = start / BLOCK_SIZE;
+        for (int offset = 0; offset < keystream.length; offset += BLOCK_SIZE) {
+            counterBlock(nonce, baseCounter + firstBlock + offset / BLOCK_SIZE, keystream, offset);
+        }
+        feistel.encryptBlocks(keystream, 0, keystream.length / BLOCK_SIZE, keystream, 0);
+        return keystream;
+    }
+
+    /**
+     * Writes the keystream block for an absolute counter value into {@code out}.
+     */
+    public static void keystreamBlock(FeistelNetwork feistel, byte[] nonce, long counter, byte[] out, int offset)
+            throws IllegalBlockSizeException {
+        counterBlock(nonce, counter, out, offset);
+        feistel.encryptBlock(out, offset, out, offset);
+    }
+
+    // The nonce with its last 8 bytes replaced by the big-endian counter
+    private static void counterBlock(byte[] nonce, long counter, byte[] out, int offset) {
+        System.arraycopy(nonce, 0, out, offset, BLOCK_SIZE - 8);
+        for (int i = 0; i < 8; i++) {
+            out[offset + BLOCK_SIZE - 1 - i] = (byte) (counter >>> (8 * i));
+        }
+    }
+
+    /**
+     * Initial counter carried in the last 8 bytes of a nonce.
+     */
+    public static long counterOf(byte[] nonce) {
+        long counter = 0;
+        for (int i = BLOCK_SIZE - 8; i < BLOCK_SIZE; i++) {
+            counter = (counter << 8) | (nonce[i] & 0xFF);
+        }
+        return counter;
+    }
+}
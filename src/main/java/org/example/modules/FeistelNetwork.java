@@ -1,75 +1,261 @@
 package org.example.modules;
 
 import javax.crypto.IllegalBlockSizeException;
+import java.nio.ByteBuffer;
 import java.security.MessageDigest;
-import java.util.Arrays;
 
-import static org.example.util.DataOperator.unionArrays;
 import static org.example.util.DataOperator.xor;
 
+/**
+ * Feistel block cipher over 128-byte blocks.
+ * Instances keep per-block scratch buffers, so a single instance must not be shared between threads.
+ */
 public class FeistelNetwork {
-    private final byte[] KEY;
-    private final int ROUNDS = 12;
+    public static final int BLOCK_SIZE = 128;
+    /** Blocks run through the rounds together by {@link #encryptBlocks} and {@link #decryptBlocks}. */
+    public static final int BATCH_BLOCKS = 4;
+    private static final int HALF_SIZE = BLOCK_SIZE / 2;
+    private static final int ROUNDS = 12;
+    private static final int ROUND_KEY_SIZE = 8;
+    private static final byte[] ROUND_SALT = {(byte)0x9E, (byte)0x37, (byte)0x79, (byte)0xC1};
+
+    private final byte[] ROUND_KEYS;
     private final Blowfish blowfish;
 
+    private byte[] left = new byte[HALF_SIZE];
+    private byte[] right = new byte[HALF_SIZE];
+    private final byte[] blowfishOut = new byte[HALF_SIZE];
+    private final byte[] kuznechikOut = new byte[HALF_SIZE];
+    private final byte[] roundOut = new byte[HALF_SIZE];
+    private final byte[] bufferBlock = new byte[BLOCK_SIZE];
+
+    // Batch state: the left halves of a batch are contiguous, as are the right halves
+    private byte[] batchLeft = new byte[BATCH_BLOCKS * HALF_SIZE];
+    private byte[] batchRight = new byte[BATCH_BLOCKS * HALF_SIZE];
+    private final byte[] batchBlowfishOut = new byte[BATCH_BLOCKS * HALF_SIZE];
+    private final byte[] batchKuznechikOut = new byte[BATCH_BLOCKS * HALF_SIZE];
+    private final byte[] batchRoundOut = new byte[BATCH_BLOCKS * HALF_SIZE];
+
     public FeistelNetwork(byte[] key) {
         if (key == null || key.length < ROUNDS) {
             throw new IllegalArgumentException("Key must be at least " + ROUNDS + " bytes long");
         }
-        this.KEY = key.clone();
+        this.ROUND_KEYS = scheduleRoundKeys(key);
         this.blowfish = new Blowfish(key);
     }
 
     public byte[] encryptBlock(byte[] block) throws IllegalBlockSizeException {
-        if (block.length != 128) throw new IllegalBlockSizeException("block length must be 128 bytes");
+        if (block.length != BLOCK_SIZE) throw new IllegalBlockSizeException("block length must be 128 bytes");
+
+        byte[] result = new byte[BLOCK_SIZE];
+        encryptBlock(block, 0, result, 0);
+        return result;
+    }
+
+    public byte[] decryptBlock(byte[] block) throws IllegalBlockSizeException {
+        if (block.length != BLOCK_SIZE) throw new IllegalBlockSizeException("Block length must be 128 bytes");
+
+        byte[] result = new byte[BLOCK_SIZE];
+        decryptBlock(block, 0, result, 0);
+        return result;
+    }
+
+    /**
+     * Encrypts one block from {@code in} into {@code out}. Both ranges may overlap, including in-place use.
+     */
+    public void encryptBlock(byte[] in, int inOff, byte[] out, int outOff) throws IllegalBlockSizeException {
+        checkBounds(in, inOff, out, outOff);
+        System.arraycopy(in, inOff, left, 0, HALF_SIZE);
+        System.arraycopy(in, inOff + HALF_SIZE, right, 0, HALF_SIZE);
 
-        byte[] left = Arrays.copyOfRange(block, 0, 64);
-        byte[] right = Arrays.copyOfRange(block, 64, 128);
         for (int i = 0; i < ROUNDS; i++) {
-            byte[] roundKey = generateRoundKey(i);
+            encryptFunction(right, i);
+            xor(left, 0, roundOut, 0, left, 0, HALF_SIZE);
+            byte[] temp = left;
+            left = right;
+            right = temp;
+        }
+
+        System.arraycopy(left, 0, out, outOff, HALF_SIZE);
+        System.arraycopy(right, 0, out, outOff + HALF_SIZE, HALF_SIZE);
+    }
+
+    /**
+     * Decrypts one block from {@code in} into {@code out}. Both ranges may overlap, including in-place use.
+     */
+    public void decryptBlock(byte[] in, int inOff, byte[] out, int outOff) throws IllegalBlockSizeException {
+        checkBounds(in, inOff, out, outOff);
+        System.arraycopy(in, inOff, left, 0, HALF_SIZE);
+        System.arraycopy(in, inOff + HALF_SIZE, right, 0, HALF_SIZE);
+
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            encryptFunction(left, i);
+            xor(right, 0, roundOut, 0, right, 0, HALF_SIZE);
             byte[] temp = right;
-            right = xor(left, encryptFunction(right, roundKey));
+            right = left;
             left = temp;
         }
-        return unionArrays(left, right);
+
+        System.arraycopy(left, 0, out, outOff, HALF_SIZE);
+        System.arraycopy(right, 0, out, outOff + HALF_SIZE, HALF_SIZE);
     }
 
-    public byte[] decryptBlock(byte[] block) throws IllegalBlockSizeException {
-        if (block.length != 128) throw new IllegalBlockSizeException("Block length must be 128 bytes");
+    /**
+     * Encrypts {@code count} consecutive blocks, giving the same result as {@link #encryptBlock} on each of them.
+     * Up to {@link #BATCH_BLOCKS} independent blocks go through every round together, so their table lookups can
+     * overlap. In-place use is allowed; otherwise the ranges must not overlap.
+     */
+    public void encryptBlocks(byte[] in, int off, int count, byte[] out, int outOff) throws IllegalBlockSizeException {
+        processBlocks(in, off, count, out, outOff, true);
+    }
 
-        byte[] left = Arrays.copyOfRange(block, 0, 64);
-        byte[] right = Arrays.copyOfRange(block, 64, 128);
+    /**
+     * Decrypts {@code count} consecutive blocks; see {@link #encryptBlocks}.
+     */
+    public void decryptBlocks(byte[] in, int off, int count, byte[] out, int outOff) throws IllegalBlockSizeException {
+        processBlocks(in, off, count, out, outOff, false);
+    }
 
-        for (int i = ROUNDS-1; i >= 0; i--) {
-            byte[] roundKey = generateRoundKey(i);
-            byte[] temp = left;
-            left = xor(right, encryptFunction(left, roundKey));
-            right = temp;
+    private void processBlocks(byte[] in, int off, int count, byte[] out, int outOff, boolean encrypt)
+            throws IllegalBlockSizeException {
+        if (count < 0) throw new IllegalArgumentException("Block count must not be negative");
+        long length = (long) count * BLOCK_SIZE;
+        if (off < 0 || in.length - off < length) {
+            throw new IllegalBlockSizeException("Input must have " + count + " blocks from offset " + off);
+        }
+        if (outOff < 0 || out.length - outOff < length) {
+            throw new IllegalBlockSizeException("Output must have " + count + " blocks from offset " + outOff);
+        }
+
+        for (int done = 0; done < count; done += BATCH_BLOCKS) {
+            int blocks = Math.min(BATCH_BLOCKS, count - done);
+            int position = done * BLOCK_SIZE;
+            for (int b = 0; b < blocks; b++) {
+                System.arraycopy(in, off + position + b * BLOCK_SIZE, batchLeft, b * HALF_SIZE, HALF_SIZE);
+                System.arraycopy(in, off + position + b * BLOCK_SIZE + HALF_SIZE, batchRight, b * HALF_SIZE, HALF_SIZE);
+            }
+
+            if (encrypt) encryptBatch(blocks);
+            else decryptBatch(blocks);
+
+            for (int b = 0; b < blocks; b++) {
+                System.arraycopy(batchLeft, b * HALF_SIZE, out, outOff + position + b * BLOCK_SIZE, HALF_SIZE);
+                System.arraycopy(batchRight, b * HALF_SIZE, out, outOff + position + b * BLOCK_SIZE + HALF_SIZE, HALF_SIZE);
+            }
+        }
+    }
+
+    private void encryptBatch(int blocks) {
+        int length = blocks * HALF_SIZE;
+        for (int i = 0; i < ROUNDS; i++) {
+            batchFunction(batchRight, blocks, i);
+            xor(batchLeft, 0, batchRoundOut, 0, batchLeft, 0, length);
+            byte[] temp = batchLeft;
+            batchLeft = batchRight;
+            batchRight = temp;
+        }
+    }
+
+    private void decryptBatch(int blocks) {
+        int length = blocks * HALF_SIZE;
+        for (int i = ROUNDS - 1; i >= 0; i--) {
+            batchFunction(batchLeft, blocks, i);
+            xor(batchRight, 0, batchRoundOut, 0, batchRight, 0, length);
+            byte[] temp = batchRight;
+            batchRight = batchLeft;
+            batchLeft = temp;
         }
+    }
 
-        return unionArrays(left, right);
+    /**
+     * Encrypts the next block of {@code in} into {@code out}, advancing both positions by one block.
+     */
+    public void encryptBlock(ByteBuffer in, ByteBuffer out) throws IllegalBlockSizeException {
+        processBuffer(in, out, true);
     }
-    private byte[] encryptFunction(byte[] subblock, byte[] k){
-        byte[] blowfishResult = blowfish.applyF(subblock, k);
-        byte[] kuznechikResult = Kuznechik.encrypt(subblock, k);
 
-        byte[] combined = xor(blowfishResult, kuznechikResult);
-        return PBlockTransformer.apply(combined);
+    /**
+     * Decrypts the next block of {@code in} into {@code out}, advancing both positions by one block.
+     */
+    public void decryptBlock(ByteBuffer in, ByteBuffer out) throws IllegalBlockSizeException {
+        processBuffer(in, out, false);
     }
-    private byte[] generateRoundKey(int round) {
-        byte[] salt = {(byte)0x9E, (byte)0x37, (byte)0x79, (byte)0xC1};
+
+    private void processBuffer(ByteBuffer in, ByteBuffer out, boolean encrypt) throws IllegalBlockSizeException {
+        if (in.remaining() < BLOCK_SIZE) throw new IllegalBlockSizeException("Input buffer has less than 128 bytes");
+        if (out.remaining() < BLOCK_SIZE) throw new IllegalBlockSizeException("Output buffer has less than 128 bytes");
+
+        byte[] src;
+        int srcOff;
+        if (in.hasArray()) {
+            src = in.array();
+            srcOff = in.arrayOffset() + in.position();
+        } else {
+            in.get(in.position(), bufferBlock, 0, BLOCK_SIZE);
+            src = bufferBlock;
+            srcOff = 0;
+        }
+
+        if (out.hasArray()) {
+            int dstOff = out.arrayOffset() + out.position();
+            if (encrypt) encryptBlock(src, srcOff, out.array(), dstOff);
+            else decryptBlock(src, srcOff, out.array(), dstOff);
+        } else {
+            if (encrypt) encryptBlock(src, srcOff, bufferBlock, 0);
+            else decryptBlock(src, srcOff, bufferBlock, 0);
+            out.put(out.position(), bufferBlock, 0, BLOCK_SIZE);
+        }
+        in.position(in.position() + BLOCK_SIZE);
+        out.position(out.position() + BLOCK_SIZE);
+    }
+
+    private void encryptFunction(byte[] subblock, int round) {
+        int keyOff = round * ROUND_KEY_SIZE;
+        blowfish.applyF(subblock, 0, ROUND_KEYS, keyOff, ROUND_KEY_SIZE, blowfishOut, 0);
+        Kuznechik.encrypt(subblock, 0, ROUND_KEYS, keyOff, kuznechikOut, 0);
+
+        xor(blowfishOut, 0, kuznechikOut, 0, blowfishOut, 0, HALF_SIZE);
+        PBlockTransformer.apply(blowfishOut, 0, HALF_SIZE, roundOut, 0);
+    }
+
+    // Round function of every half in the batch; the XOR and P-block stages run over all halves at once
+    private void batchFunction(byte[] halves, int blocks, int round) {
+        int keyOff = round * ROUND_KEY_SIZE;
+        int length = blocks * HALF_SIZE;
+        for (int h = 0; h < length; h += HALF_SIZE) {
+            blowfish.applyF(halves, h, ROUND_KEYS, keyOff, ROUND_KEY_SIZE, batchBlowfishOut, h);
+            Kuznechik.encrypt(halves, h, ROUND_KEYS, keyOff, batchKuznechikOut, h);
+        }
+        xor(batchBlowfishOut, 0, batchKuznechikOut, 0, batchBlowfishOut, 0, length);
+        PBlockTransformer.apply(batchBlowfishOut, 0, length, batchRoundOut, 0);
+    }
+
+    private static void checkBounds(byte[] in, int inOff, byte[] out, int outOff) throws IllegalBlockSizeException {
+        if (inOff < 0 || in.length - inOff < BLOCK_SIZE) {
+            throw new IllegalBlockSizeException("Input must have 128 bytes from offset " + inOff);
+        }
+        if (outOff < 0 || out.length - outOff < BLOCK_SIZE) {
+            throw new IllegalBlockSizeException("Output must have 128 bytes from offset " + outOff);
+        }
+    }
+
+    private static byte[] scheduleRoundKeys(byte[] key) {
+        byte[] roundKeys = new byte[ROUNDS * ROUND_KEY_SIZE];
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
-            md.update(KEY);
-            md.update(salt);
-            md.update((byte) round);
-            md.update((byte) (round >> 8));
-            md.update((byte) (round >> 16));
-
-            byte[] digest = md.digest();
-            return Arrays.copyOf(digest, 8);
+            for (int round = 0; round < ROUNDS; round++) {
+                md.update(key);
+                md.update(ROUND_SALT);
+                md.update((byte) round);
+                md.update((byte) (round >> 8));
+                md.update((byte) (round >> 16));
+
+                byte[] digest = md.digest();
+                System.arraycopy(digest, 0, roundKeys, round * ROUND_KEY_SIZE, ROUND_KEY_SIZE);
+            }
+            return roundKeys;
         } catch (Exception e) {
             throw new RuntimeException("Key generation failed", e);
         }
     }
-}
\ No newline at end of file
+}
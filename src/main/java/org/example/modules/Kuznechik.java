@@ -1,10 +1,5 @@
 package org.example.modules;
 
-import java.nio.ByteBuffer;
-import java.util.Arrays;
-
-import static org.example.util.DataOperator.xor;
-
 public class Kuznechik {
     private static final byte[] SBOX = {
             0x0C, 0x04, 0x06, 0x02, 0x0A, 0x05, 0x0B, 0x09,
@@ -20,53 +15,73 @@ public class Kuznechik {
     private static final int BLOCK_SIZE = 64;
     private static final int KEY_SIZE = 8;
 
-    public static byte[] encrypt(byte[] data, byte[] key) {
-        if (data.length != BLOCK_SIZE) throw new IllegalArgumentException("Data must be " + BLOCK_SIZE + " bytes");
-        if (key.length != KEY_SIZE) throw new IllegalArgumentException("Key must be " + KEY_SIZE + " bytes");
-        byte[] expandedKey = new byte[BLOCK_SIZE];
-        for (int i = 0; i < BLOCK_SIZE; i++) {
-            expandedKey[i] = key[i % KEY_SIZE];
+    /** Byte-wide S-box: both nibbles substituted at once. */
+    private static final byte[] SBOX_BYTE = new byte[256];
+    /**
+     * For every byte position of an 8-byte lane, the permuted lane produced by an S-boxed input byte at that
+     * position. The P-box only moves bits, so a lane is the OR of its eight per-byte contributions.
+     */
+    private static final long[][] SP_TABLE = new long[8][256];
+
+    static {
+        for (int value = 0; value < 256; value++) {
+            SBOX_BYTE[value] = (byte) ((SBOX[value >>> 4] << 4) | SBOX[value & 0x0F]);
+        }
+        for (int position = 0; position < 8; position++) {
+            for (int value = 0; value < 256; value++) {
+                long bits = (long) (SBOX_BYTE[value] & 0xFF) << (56 - 8 * position);
+                SP_TABLE[position][value] = permute(bits);
+            }
         }
-        byte[] xored = xor(data, expandedKey);
-        byte[] sboxed = applySBox(xored);
-        return applyLinearTransformation(sboxed);
     }
 
-    private static byte[] applySBox(byte[] data) {
-        byte[] result = new byte[data.length];
-        for (int i = 0; i < data.length; i++) {
-            int highNibble = (data[i] >>> 4) & 0x0F;
-            int lowNibble = data[i] & 0x0F;
-            result[i] = (byte) ((SBOX[highNibble] << 4) | SBOX[lowNibble]);
-        }
+    public static byte[] encrypt(byte[] data, byte[] key) {
+        if (data.length != BLOCK_SIZE) throw new IllegalArgumentException("Data must be " + BLOCK_SIZE + " bytes");
+        if (key.length != KEY_SIZE) throw new IllegalArgumentException("Key must be " + KEY_SIZE + " bytes");
+        byte[] result = new byte[BLOCK_SIZE];
+        encrypt(data, 0, key, 0, result, 0);
         return result;
     }
 
-    private static byte[] applyLinearTransformation(byte[] data) {
-        byte[][] parts = new byte[8][8];
-        for (int i = 0; i < 8; i++) {
-            parts[i] = Arrays.copyOfRange(data, i * 8, (i + 1) * 8);
-        }
-        for (int i = 0; i < 8; i++) {
-            parts[i] = applyPBox(parts[i]);
-        }
-        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
-        for (byte[] part : parts) {
-            buffer.put(part);
+    /**
+     * Same transformation as {@link #encrypt(byte[], byte[])}, written into {@code out} without allocating.
+     */
+    public static void encrypt(byte[] data, int dataOff, byte[] key, int keyOff, byte[] out, int outOff) {
+        long[] t0 = SP_TABLE[0], t1 = SP_TABLE[1], t2 = SP_TABLE[2], t3 = SP_TABLE[3];
+        long[] t4 = SP_TABLE[4], t5 = SP_TABLE[5], t6 = SP_TABLE[6], t7 = SP_TABLE[7];
+        int k0 = key[keyOff], k1 = key[keyOff + 1], k2 = key[keyOff + 2], k3 = key[keyOff + 3];
+        int k4 = key[keyOff + 4], k5 = key[keyOff + 5], k6 = key[keyOff + 6], k7 = key[keyOff + 7];
+
+        for (int lane = 0; lane < BLOCK_SIZE; lane += 8) {
+            int p = dataOff + lane;
+            long transformed = t0[(data[p] ^ k0) & 0xFF]
+                    | t1[(data[p + 1] ^ k1) & 0xFF]
+                    | t2[(data[p + 2] ^ k2) & 0xFF]
+                    | t3[(data[p + 3] ^ k3) & 0xFF]
+                    | t4[(data[p + 4] ^ k4) & 0xFF]
+                    | t5[(data[p + 5] ^ k5) & 0xFF]
+                    | t6[(data[p + 6] ^ k6) & 0xFF]
+                    | t7[(data[p + 7] ^ k7) & 0xFF];
+
+            int q = outOff + lane;
+            out[q] = (byte) (transformed >>> 56);
+            out[q + 1] = (byte) (transformed >>> 48);
+            out[q + 2] = (byte) (transformed >>> 40);
+            out[q + 3] = (byte) (transformed >>> 32);
+            out[q + 4] = (byte) (transformed >>> 24);
+            out[q + 5] = (byte) (transformed >>> 16);
+            out[q + 6] = (byte) (transformed >>> 8);
+            out[q + 7] = (byte) transformed;
         }
-        return buffer.array();
     }
 
-    private static byte[] applyPBox(byte[] eightBytes) {
-        if (eightBytes.length != 8) throw new IllegalArgumentException("P-box requires 8 bytes");
-        long bits = ByteBuffer.wrap(eightBytes).getLong();
+    private static long permute(long bits) {
         long transformed = 0;
-
         for (int i = 0; i < 64; i++) {
             int bitPos = 63 - PBOX[i % PBOX.length];
             long bit = (bits >> bitPos) & 1;
             transformed |= (bit << (63 - i));
         }
-        return ByteBuffer.allocate(8).putLong(transformed).array();
+        return transformed;
     }
-}
\ No newline at end of file
+}
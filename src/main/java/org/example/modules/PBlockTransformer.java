@@ -8,37 +8,63 @@ public class PBlockTransformer {
             0x03, 0x01, 0x01, 0x02
     };
 
+    /**
+     * T-tables: {@code T_TABLES[k][b]} packs the products of input byte {@code b} at column {@code k}
+     * with the four matrix rows, first row in the most significant byte.
+     */
+    private static final int[][] T_TABLES = new int[4][256];
+
+    static {
+        for (int k = 0; k < 4; k++) {
+            for (int b = 0; b < 256; b++) {
+                int packed = 0;
+                for (int j = 0; j < 4; j++) {
+                    packed = (packed << 8) | (galoisMultiply(b, MIX_COLUMNS_MATRIX[j * 4 + k]) & 0xFF);
+                }
+                T_TABLES[k][b] = packed;
+            }
+        }
+    }
+
     public static byte[] apply(byte[] data) {
         if (data.length % 64 != 0) {
             throw new IllegalArgumentException("Input must be a multiple of 64 bytes");
         }
         byte[] result = new byte[data.length];
-        int numBlocks = data.length / 64;
-        for (int blockIndex = 0; blockIndex < numBlocks; blockIndex++) {
-            byte[] block = new byte[64];
-            System.arraycopy(data, blockIndex * 64, block, 0, 64);
-
-            byte[] transformedBlock = applyBlock(block);
-            System.arraycopy(transformedBlock, 0, result, blockIndex * 64, 64);
-        }
+        apply(data, 0, data.length, result, 0);
         return result;
     }
 
-    private static byte[] applyBlock(byte[] block) {
-        if (block.length != 64) {
-            throw new IllegalArgumentException("Block must be 64 bytes");
+    /**
+     * Transforms {@code length} bytes of {@code data} into {@code out} without allocating; in-place use is allowed.
+     */
+    public static void apply(byte[] data, int offset, int length, byte[] out, int outOffset) {
+        if (length % 64 != 0) {
+            throw new IllegalArgumentException("Input must be a multiple of 64 bytes");
         }
-        byte[] result = new byte[64];
-        for (int i = 0; i < 4; i++) {
-            for (int j = 0; j < 4; j++) {
-                int val = 0;
-                for (int k = 0; k < 4; k++) {
-                    val ^= galoisMultiply(block[i * 16 + k] & 0xFF, MIX_COLUMNS_MATRIX[j * 4 + k]);
-                }
-                result[i * 16 + j] = (byte) val;
+        for (int blockOffset = 0; blockOffset < length; blockOffset += 64) {
+            applyBlock(data, offset + blockOffset, out, outOffset + blockOffset);
+        }
+    }
+
+    private static void applyBlock(byte[] block, int offset, byte[] out, int outOffset) {
+        int[] t0 = T_TABLES[0], t1 = T_TABLES[1], t2 = T_TABLES[2], t3 = T_TABLES[3];
+        for (int row = 0; row < 64; row += 16) {
+            int in = offset + row;
+            int column = t0[block[in] & 0xFF]
+                    ^ t1[block[in + 1] & 0xFF]
+                    ^ t2[block[in + 2] & 0xFF]
+                    ^ t3[block[in + 3] & 0xFF];
+
+            int o = outOffset + row;
+            out[o] = (byte) (column >>> 24);
+            out[o + 1] = (byte) (column >>> 16);
+            out[o + 2] = (byte) (column >>> 8);
+            out[o + 3] = (byte) column;
+            for (int j = 4; j < 16; j++) {
+                out[o + j] = 0;
             }
         }
-        return result;
     }
 
     private static int galoisMultiply(int a, int b) {
@@ -56,4 +82,4 @@ public class PBlockTransformer {
         }
         return p;
     }
-}
\ No newline at end of file
+}
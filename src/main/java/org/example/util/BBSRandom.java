@@ -1,32 +1,155 @@
 package org.example.util;
 
+import org.example.events.RandomGenerationEvent;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.function.Supplier;
 
+/**
+ * Blum Blum Shub generator. Every squaring of the state modulo a Blum integer yields its lowest
+ * {@code bitsPerSquaring} bits, and output bit {@code i} lands in bit {@code i % 8} of byte {@code i / 8}.
+ * Instances are thread-safe.
+ */
 public class BBSRandom {
-    private BigInteger state;
+    private static final VarHandle LONG_LE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static volatile BBSRandom shared;
+    private static Supplier<BigInteger> sharedModulus = BBSRandom::generateModulus;
+
+    private final MontgomerySquarer squarer;
     private final BigInteger M;
+    private final int bitsPerSquaring;
 
     public BBSRandom() {
-        BigInteger p = generateBlumPrime(512);
-        BigInteger q = generateBlumPrime(512);
-        this.M = p.multiply(q);
-        this.state = getSeed();
+        this(1);
+    }
+
+    public BBSRandom(int bitsPerSquaring) {
+        this(generateModulus(), bitsPerSquaring);
+    }
+
+    /**
+     * Generator over a known Blum integer with a freshly collected seed.
+     */
+    public BBSRandom(BigInteger modulus, int bitsPerSquaring) {
+        this.M = modulus;
+        this.bitsPerSquaring = checkBitsPerSquaring(bitsPerSquaring, modulus);
+        this.squarer = new MontgomerySquarer(modulus);
+        squarer.setState(getSeed());
+    }
+
+    /**
+     * Generator over a known Blum integer, starting from {@code seed}; mainly for reproducing a sequence.
+     */
+    public BBSRandom(BigInteger modulus, BigInteger seed, int bitsPerSquaring) {
+        if (seed.signum() <= 0 || seed.compareTo(modulus) >= 0 || !seed.gcd(modulus).equals(BigInteger.ONE)) {
+            throw new IllegalArgumentException("Seed must be a unit modulo the modulus");
+        }
+        this.M = modulus;
+        this.bitsPerSquaring = checkBitsPerSquaring(bitsPerSquaring, modulus);
+        this.squarer = new MontgomerySquarer(modulus);
+        squarer.setState(seed);
+    }
+
+    /**
+     * Process-wide generator, created on first use, that keeps its modulus for the life of the process and
+     * takes {@link #secureBitsPerSquaring} bits per squaring.
+     */
+    public static BBSRandom shared() {
+        BBSRandom instance = shared;
+        if (instance != null) return instance;
+        synchronized (BBSRandom.class) {
+            if (shared == null) {
+                BigInteger modulus = sharedModulus.get();
+                shared = new BBSRandom(modulus, secureBitsPerSquaring(modulus));
+            }
+            return shared;
+        }
+    }
+
+    /**
+     * Sets where the shared generator takes its modulus from, e.g. a {@link BlumParameters} file. The supplier is
+     * only called when the shared generator is first needed, so commands that never draw randomness skip it. Once
+     * the generator exists, the supplier is called right away to compare its modulus with the one in use.
+     *
+     * @return {@code false} if the shared generator already exists with a different modulus, which it keeps
+     */
+    public static synchronized boolean useSharedModulus(Supplier<BigInteger> modulus) {
+        if (shared != null) return shared.M.equals(modulus.get());
+        sharedModulus = modulus;
+        return true;
+    }
+
+    /**
+     * Number of low bits that can be taken per squaring while staying as hard to predict as factoring the modulus:
+     * {@code floor(log2(log2 M))}, 9 or 10 for the moduli generated here.
+     */
+    public static int secureBitsPerSquaring(BigInteger modulus) {
+        return 31 - Integer.numberOfLeadingZeros(modulus.bitLength());
+    }
+
+    private static int checkBitsPerSquaring(int bits, BigInteger modulus) {
+        if (bits < 1 || bits > secureBitsPerSquaring(modulus)) {
+            throw new IllegalArgumentException("Bits per squaring must be between 1 and " + secureBitsPerSquaring(modulus));
+        }
+        return bits;
+    }
+
+    private long nextBits() {
+        squarer.square();
+        return squarer.lowBits();
     }
 
-    private int nextBit() {
-        state = state.modPow(BigInteger.TWO, M);
-        return state.testBit(0) ? 1 : 0;
+    public BigInteger getModulus() {
+        return M;
     }
 
-    public byte[] nextBytes(int length) {
+    /**
+     * Collects the output bits into 64-bit words and stores whole words at a time. Exactly {@code 8 * length} bits
+     * are consumed, so consecutive calls continue the same bit sequence.
+     */
+    public synchronized byte[] nextBytes(int length) {
+        RandomGenerationEvent event = new RandomGenerationEvent();
+        event.begin();
         byte[] bytes = new byte[length];
-        for (int i = 0; i < length * 8; i++) {
-            int bit = nextBit();
-            bytes[i / 8] |= (bit << (i % 8));
+        long needed = 8L * length;
+        long produced = 0;
+        int position = 0;
+        long word = 0;
+        int wordBits = 0;
+
+        while (produced < needed) {
+            int take = (int) Math.min(bitsPerSquaring, needed - produced);
+            long bits = nextBits() & ((1L << take) - 1);
+            word |= bits << wordBits;
+            int room = Long.SIZE - wordBits;
+            if (take >= room) {
+                LONG_LE.set(bytes, position, word);
+                position += Long.BYTES;
+                word = bits >>> room;
+                wordBits = take - room;
+            } else {
+                wordBits += take;
+            }
+            produced += take;
+        }
+        for (; wordBits > 0; wordBits -= 8, word >>>= 8) {
+            bytes[position++] = (byte) word;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.length = length;
+            event.bitsPerSquaring = bitsPerSquaring;
+            event.modulusBits = M.bitLength();
+            event.commit();
         }
         return bytes;
     }
@@ -79,7 +202,14 @@ public class BBSRandom {
         return result;
     }
 
-    private BigInteger generateBlumPrime(int bitLength) {
+    /**
+     * Fresh Blum integer: the product of two 512-bit primes congruent to 3 mod 4.
+     */
+    public static BigInteger generateModulus() {
+        return generateBlumPrime(512).multiply(generateBlumPrime(512));
+    }
+
+    private static BigInteger generateBlumPrime(int bitLength) {
         BigInteger prime = BigInteger.probablePrime(bitLength, new java.util.Random(System.nanoTime()));
         while (!prime.mod(BigInteger.valueOf(4)).equals(BigInteger.valueOf(3))) {
             prime = prime.nextProbablePrime();
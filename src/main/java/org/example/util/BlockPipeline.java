@@ -0,0 +1,167 @@
+package org.example.util;
+
+import javax.crypto.IllegalBlockSizeException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Three-stage pipeline: a reader thread fills large reusable buffers, the calling thread transforms them in place
+ * and a writer thread drains them. The stages are connected by bounded queues, so disk and CPU work overlap.
+ * Inputs that fit into a single buffer are processed inline without extra threads.
+ */
+public class BlockPipeline {
+    @FunctionalInterface
+    public interface Stage {
+        /**
+         * Transforms {@code length} bytes of {@code buffer} in place and returns how many bytes to write.
+         * Every buffer has {@code slack} spare bytes after {@code length}, e.g. for padding the last chunk.
+         */
+        int process(byte[] buffer, int length, boolean last) throws IOException, IllegalBlockSizeException;
+    }
+
+    private static final class Chunk {
+        final byte[] data;
+        int length;
+        boolean last;
+
+        Chunk(int capacity) {
+            this.data = new byte[capacity];
+        }
+    }
+
+    private final int bufferSize;
+    private final int slack;
+    private final int depth;
+
+    public BlockPipeline(int bufferSize, int slack, int depth) {
+        if (depth < 2) throw new IllegalArgumentException("Pipeline needs at least 2 buffers");
+        this.bufferSize = bufferSize;
+        this.slack = slack;
+        this.depth = depth;
+    }
+
+    public void run(InputStream in, long length, OutputStream out, Stage stage) throws IOException, IllegalBlockSizeException {
+        if (length <= bufferSize) {
+            int n = (int) length;
+            byte[] buffer = new byte[n + slack];
+            if (in.readNBytes(buffer, 0, n) != n) throw new EOFException("Unexpected end of input");
+            out.write(buffer, 0, stage.process(buffer, n, true));
+            return;
+        }
+
+        BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(depth);
+        BlockingQueue<Chunk> filled = new ArrayBlockingQueue<>(depth);
+        BlockingQueue<Chunk> processed = new ArrayBlockingQueue<>(depth);
+        for (int i = 0; i < depth; i++) {
+            free.add(new Chunk(bufferSize + slack));
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Thread reader = new Thread(() -> {
+            try {
+                long remaining = length;
+                while (remaining > 0) {
+                    Chunk chunk = free.take();
+                    int n = (int) Math.min(bufferSize, remaining);
+                    if (in.readNBytes(chunk.data, 0, n) != n) throw new EOFException("Unexpected end of input");
+                    remaining -= n;
+                    chunk.length = n;
+                    chunk.last = remaining == 0;
+                    filled.put(chunk);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        }, "pipeline-reader");
+
+        Thread writer = new Thread(() -> {
+            try {
+                boolean last = false;
+                while (!last) {
+                    Chunk chunk = processed.take();
+                    out.write(chunk.data, 0, chunk.length);
+                    last = chunk.last;
+                    free.put(chunk);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        }, "pipeline-writer");
+
+        reader.setDaemon(true);
+        writer.setDaemon(true);
+        reader.start();
+        writer.start();
+
+        try {
+            boolean last = false;
+            while (!last) {
+                Chunk chunk = take(filled, failure);
+                chunk.length = stage.process(chunk.data, chunk.length, chunk.last);
+                last = chunk.last;
+                processed.put(chunk);
+            }
+            reader.join();
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException interrupted = new InterruptedIOException("Pipeline interrupted");
+            stop(interrupted, reader, writer, failure);
+            throw interrupted;
+        } catch (Throwable t) {
+            stop(t, reader, writer, failure);
+            throw t;
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof IOException io) throw io;
+        if (t instanceof RuntimeException re) throw re;
+        if (t instanceof Error e) throw e;
+        if (t != null) throw new IOException("Pipeline stage failed", t);
+    }
+
+    // Stops both worker threads before the failure propagates, so none of them touches the streams afterwards
+    private static void stop(Throwable primary, Thread reader, Thread writer, AtomicReference<Throwable> failure) {
+        reader.interrupt();
+        writer.interrupt();
+        joinUninterruptibly(reader);
+        joinUninterruptibly(writer);
+
+        Throwable secondary = failure.get();
+        if (secondary != null && secondary != primary && secondary != primary.getCause()
+                && !(secondary instanceof InterruptedException)) {
+            primary.addSuppressed(secondary);
+        }
+    }
+
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = Thread.interrupted();
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    private static Chunk take(BlockingQueue<Chunk> queue, AtomicReference<Throwable> failure)
+            throws IOException, InterruptedException {
+        while (true) {
+            Chunk chunk = queue.poll(100, TimeUnit.MILLISECONDS);
+            if (chunk != null) return chunk;
+            Throwable t = failure.get();
+            if (t instanceof IOException io) throw io;
+            if (t != null) throw new IOException("Pipeline stage failed", t);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package org.example.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**
+ * Local file holding the Blum modulus of {@link BBSRandom#shared()}, so the primes are generated once instead of on
+ * every run. Only the modulus is stored, never its factors, together with a checksum; a file that fails the checks
+ * is reported instead of silently replaced, and is only regenerated on request.
+ */
+public final class BlumParameters {
+    private static final String MODULUS = "modulus";
+    private static final String CHECKSUM = "checksum";
+    private static final BigInteger SMALL_PRIMES = primorial(1000);
+
+    private BlumParameters() {
+    }
+
+    /**
+     * Loads the modulus from {@code file}, creating the file first when it does not exist.
+     */
+    public static BigInteger loadOrCreate(Path file) throws IOException {
+        if (Files.notExists(file)) return regenerate(file);
+
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        String hex = properties.getProperty(MODULUS);
+        if (hex == null || !checksum(hex).equals(properties.getProperty(CHECKSUM))) {
+            throw new IOException("BBS parameter file " + file + " is corrupted");
+        }
+        BigInteger modulus;
+        try {
+            modulus = new BigInteger(hex, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("BBS parameter file " + file + " is corrupted", e);
+        }
+        if (!isPlausibleBlumInteger(modulus)) {
+            throw new IOException("BBS parameter file " + file + " does not hold a valid Blum modulus");
+        }
+        return modulus;
+    }
+
+    /**
+     * Generates a new modulus and replaces {@code file} with it, readable by the owner only where supported.
+     */
+    public static BigInteger regenerate(Path file) throws IOException {
+        BigInteger modulus = BBSRandom.generateModulus();
+        Properties properties = new Properties();
+        String hex = modulus.toString(16);
+        properties.setProperty(MODULUS, hex);
+        properties.setProperty(CHECKSUM, checksum(hex));
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temp = Files.createTempFile(directory, ".bbs", ".tmp");
+        try {
+            if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+                Files.setPosixFilePermissions(temp, PosixFilePermissions.fromString("rw-------"));
+            }
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                properties.store(writer, "Blum modulus for BBSRandom");
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return modulus;
+    }
+
+    /**
+     * Supplier for {@link BBSRandom#useSharedModulus} that reads or creates {@code file} on first use.
+     */
+    public static BigInteger loadOrCreateUnchecked(Path file) {
+        try {
+            return loadOrCreate(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // The factors are not stored, so only what follows from them is checked: a 1023 or 1024-bit composite that is
+    // 1 mod 4 (as p = q = 3 mod 4), not a square and free of small factors
+    private static boolean isPlausibleBlumInteger(BigInteger modulus) {
+        int bits = modulus.bitLength();
+        if (bits < 1023 || bits > 1024) return false;
+        if (modulus.mod(BigInteger.valueOf(4)).intValue() != 1) return false;
+        if (!modulus.gcd(SMALL_PRIMES).equals(BigInteger.ONE)) return false;
+        if (modulus.sqrt().pow(2).equals(modulus)) return false;
+        return !modulus.isProbablePrime(40);
+    }
+
+    private static String checksum(String hex) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(hex.getBytes(StandardCharsets.US_ASCII));
+            return DataOperator.bytesToHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static BigInteger primorial(int limit) {
+        BigInteger product = BigInteger.ONE;
+        for (BigInteger p = BigInteger.TWO; p.intValue() < limit; p = p.nextProbablePrime()) {
+            product = product.multiply(p);
+        }
+        return product;
+    }
+}
@@ -1,13 +1,71 @@
 package org.example.util;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
 public class DataOperator {
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    /**
+     * Vector API kernel for {@link #xor}, or null. {@code VectorXor} is only compiled by the {@code vector} Maven
+     * profile, and the incubator module is only present when the JVM runs with
+     * {@code --add-modules jdk.incubator.vector}; {@code -Dcrypto.vector=false} forces the scalar path.
+     */
+    private static final XorKernel VECTOR_KERNEL = loadVectorKernel();
+    private static final int VECTOR_MIN_LENGTH = VECTOR_KERNEL != null ? VECTOR_KERNEL.minLength() : Integer.MAX_VALUE;
+
+    /** Bulk XOR implementation that is loaded by name, so the default build compiles without the incubator module. */
+    interface XorKernel {
+        /** Shorter ranges are left to the word loop. */
+        int minLength();
+
+        void xor(byte[] a, int aOff, byte[] b, int bOff, byte[] out, int outOff, int length);
+    }
+
     public static byte[] xor(byte[] a, byte[] b) {
         byte[] c = new byte[a.length];
-        for (int i = 0; i < c.length; i++) {
-            c[i] = (byte) (a[i] ^ b[i]);
-        }
+        xor(a, 0, b, 0, c, 0, c.length);
         return c;
     }
+
+    /**
+     * XORs {@code length} bytes of {@code a} and {@code b} into {@code out}. The output range may be the same as
+     * an input range, but must not partially overlap one.
+     */
+    public static void xor(byte[] a, int aOff, byte[] b, int bOff, byte[] out, int outOff, int length) {
+        if (length >= VECTOR_MIN_LENGTH) {
+            VECTOR_KERNEL.xor(a, aOff, b, bOff, out, outOff, length);
+        } else {
+            xorWords(a, aOff, b, bOff, out, outOff, length);
+        }
+    }
+
+    // Eight bytes per step; byte order does not matter for XOR, so the native order keeps loads unswapped
+    static void xorWords(byte[] a, int aOff, byte[] b, int bOff, byte[] out, int outOff, int length) {
+        int i = 0;
+        for (; i <= length - Long.BYTES; i += Long.BYTES) {
+            LONGS.set(out, outOff + i, (long) LONGS.get(a, aOff + i) ^ (long) LONGS.get(b, bOff + i));
+        }
+        for (; i < length; i++) {
+            out[outOff + i] = (byte) (a[aOff + i] ^ b[bOff + i]);
+        }
+    }
+
+    public static boolean isVectorized() {
+        return VECTOR_KERNEL != null;
+    }
+
+    private static XorKernel loadVectorKernel() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()
+                || "false".equals(System.getProperty("crypto.vector"))) {
+            return null;
+        }
+        try {
+            return (XorKernel) Class.forName("org.example.util.VectorXor").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
     public static byte[] unionArrays(byte[] a, byte[] b) {
         byte[] combined = new byte[a.length + b.length];
         System.arraycopy(a,0, combined,0, a.length);
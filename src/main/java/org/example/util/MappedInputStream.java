@@ -0,0 +1,68 @@
+package org.example.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a region of a file through read-only memory-mapped windows instead of read() system calls.
+ * The channel stays owned by the caller.
+ */
+public class MappedInputStream extends InputStream {
+    private static final long WINDOW_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+    private MappedByteBuffer window;
+
+    public MappedInputStream(FileChannel channel, long position, long length) {
+        this.channel = channel;
+        this.position = position;
+        this.end = position + length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureWindow()) return -1;
+        position++;
+        return window.get() & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!ensureWindow()) return -1;
+        int n = Math.min(len, window.remaining());
+        window.get(b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        long skipped = Math.max(0, Math.min(n, end - position));
+        position += skipped;
+        window = null;
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - position);
+    }
+
+    @Override
+    public void close() {
+        window = null;
+    }
+
+    private boolean ensureWindow() throws IOException {
+        if (position >= end) return false;
+        if (window == null || !window.hasRemaining()) {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, end - position));
+        }
+        return true;
+    }
+}
@@ -0,0 +1,58 @@
+package org.example.util;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Writes into a file pre-sized to {@code capacity} bytes through read-write memory-mapped windows.
+ * On close the file is truncated to the number of bytes actually written. The channel stays owned by the caller.
+ */
+public class MappedOutputStream extends OutputStream {
+    private static final long WINDOW_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private final long end;
+    private long position;
+    private MappedByteBuffer window;
+
+    public MappedOutputStream(FileChannel channel, long position, long capacity) {
+        this.channel = channel;
+        this.position = position;
+        this.end = position + capacity;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensureWindow();
+        window.put((byte) b);
+        position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            ensureWindow();
+            int n = Math.min(len, window.remaining());
+            window.put(b, off, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        window = null;
+        if (position < end && channel.isOpen()) {
+            channel.truncate(position);
+        }
+    }
+
+    private void ensureWindow() throws IOException {
+        if (window != null && window.hasRemaining()) return;
+        if (position >= end) throw new IOException("Mapped output is full");
+        window = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.min(WINDOW_SIZE, end - position));
+    }
+}
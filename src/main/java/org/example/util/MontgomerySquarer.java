@@ -0,0 +1,188 @@
+package org.example.util;
+
+import java.math.BigInteger;
+
+/**
+ * Repeated modular squaring for a fixed odd modulus, as used by {@link BBSRandom}. The state stays in Montgomery
+ * form ({@code x * 2^(64n) mod M}) in a little-endian {@code long[]} of {@code n} limbs, so a squaring is a plain
+ * square followed by a Montgomery reduction on preallocated arrays; the plain value is only reduced out when bits
+ * are read.
+ * Not thread-safe.
+ */
+public final class MontgomerySquarer {
+    private final int limbs;
+    private final long[] modulus;
+    private final long inverse;
+    private final BigInteger modulusValue;
+    private long[] state;
+    private long[] product;
+    private final long[] wide;
+
+    public MontgomerySquarer(BigInteger modulus) {
+        if (modulus.signum() <= 0 || !modulus.testBit(0)) throw new IllegalArgumentException("Modulus must be odd and positive");
+        this.modulusValue = modulus;
+        this.limbs = (modulus.bitLength() + 63) / 64;
+        this.modulus = toLimbs(modulus, limbs);
+        this.inverse = negativeInverse(this.modulus[0]);
+        this.state = new long[limbs];
+        this.product = new long[limbs];
+        this.wide = new long[2 * limbs + 1];
+    }
+
+    /**
+     * Starts from {@code value}, which must lie in {@code [0, M)}.
+     */
+    public void setState(BigInteger value) {
+        if (value.signum() < 0 || value.compareTo(modulusValue) >= 0) throw new IllegalArgumentException("State out of range");
+        state = toLimbs(value.shiftLeft(64 * limbs).mod(modulusValue), limbs);
+    }
+
+    public void square() {
+        square(state, product);
+        long[] swap = state;
+        state = product;
+        product = swap;
+    }
+
+    /**
+     * Lowest 64 bits of the plain state. The conversion out of Montgomery form is a multiplication by one.
+     */
+    public long lowBits() {
+        reduce(state, product);
+        return product[0];
+    }
+
+    /**
+     * Plain state as a {@link BigInteger}; allocates, so it is meant for checks rather than the squaring loop.
+     */
+    public BigInteger value() {
+        reduce(state, product);
+        BigInteger result = BigInteger.ZERO;
+        for (int i = limbs - 1; i >= 0; i--) {
+            result = result.shiftLeft(64).or(new BigInteger(Long.toUnsignedString(product[i])));
+        }
+        return result;
+    }
+
+    // Schoolbook square with every cross product computed once and doubled, followed by Montgomery reduction
+    private void square(long[] a, long[] out) {
+        long[] t = wide;
+        java.util.Arrays.fill(t, 0);
+        for (int i = 0; i < limbs; i++) {
+            long ai = a[i];
+            long carry = 0;
+            for (int j = i + 1; j < limbs; j++) {
+                long lo = ai * a[j];
+                long hi = unsignedMultiplyHigh(ai, a[j]);
+                lo += t[i + j];
+                if (Long.compareUnsigned(lo, t[i + j]) < 0) hi++;
+                lo += carry;
+                if (Long.compareUnsigned(lo, carry) < 0) hi++;
+                t[i + j] = lo;
+                carry = hi;
+            }
+            t[i + limbs] = carry;
+        }
+
+        for (int k = 2 * limbs - 1; k > 0; k--) {
+            t[k] = (t[k] << 1) | (t[k - 1] >>> 63);
+        }
+        t[0] <<= 1;
+
+        long carry = 0;
+        for (int i = 0; i < limbs; i++) {
+            long lo = a[i] * a[i];
+            long hi = unsignedMultiplyHigh(a[i], a[i]);
+            long x = t[2 * i] + lo;
+            long c = Long.compareUnsigned(x, lo) < 0 ? 1 : 0;
+            x += carry;
+            if (Long.compareUnsigned(x, carry) < 0) c++;
+            t[2 * i] = x;
+            long y = t[2 * i + 1] + hi;
+            long c2 = Long.compareUnsigned(y, hi) < 0 ? 1 : 0;
+            y += c;
+            if (Long.compareUnsigned(y, c) < 0) c2++;
+            t[2 * i + 1] = y;
+            carry = c2;
+        }
+        t[2 * limbs] = carry;
+        redc(t, out);
+    }
+
+    // Conversion out of Montgomery form: the reduction of the state itself, zero-extended
+    private void reduce(long[] a, long[] out) {
+        long[] t = wide;
+        java.util.Arrays.fill(t, 0);
+        System.arraycopy(a, 0, t, 0, limbs);
+        redc(t, out);
+    }
+
+    // Montgomery reduction of the 2n+1 limbs in t into out: t / 2^(64n) mod M, with t below M * 2^(64n)
+    private void redc(long[] t, long[] out) {
+        for (int i = 0; i < limbs; i++) {
+            long m = t[i] * inverse;
+            long carry = 0;
+            for (int j = 0; j < limbs; j++) {
+                long lo = m * modulus[j];
+                long hi = unsignedMultiplyHigh(m, modulus[j]);
+                lo += t[i + j];
+                if (Long.compareUnsigned(lo, t[i + j]) < 0) hi++;
+                lo += carry;
+                if (Long.compareUnsigned(lo, carry) < 0) hi++;
+                t[i + j] = lo;
+                carry = hi;
+            }
+            for (int k = i + limbs; carry != 0 && k <= 2 * limbs; k++) {
+                t[k] += carry;
+                carry = Long.compareUnsigned(t[k], carry) < 0 ? 1 : 0;
+            }
+        }
+        finish(t, limbs, out);
+    }
+
+    // The n+1 limbs of t from offset hold a value below 2M, so one conditional subtraction brings it into [0, M)
+    private void finish(long[] t, int offset, long[] out) {
+        boolean subtract = t[offset + limbs] != 0 || compare(t, offset, modulus) >= 0;
+        if (!subtract) {
+            System.arraycopy(t, offset, out, 0, limbs);
+            return;
+        }
+        long borrow = 0;
+        for (int j = 0; j < limbs; j++) {
+            long x = t[offset + j];
+            long d = x - modulus[j] - borrow;
+            borrow = (Long.compareUnsigned(x, modulus[j]) < 0 || (borrow == 1 && x == modulus[j])) ? 1 : 0;
+            out[j] = d;
+        }
+    }
+
+    private int compare(long[] a, int offset, long[] b) {
+        for (int j = limbs - 1; j >= 0; j--) {
+            int c = Long.compareUnsigned(a[offset + j], b[j]);
+            if (c != 0) return c;
+        }
+        return 0;
+    }
+
+    // Math.unsignedMultiplyHigh only exists from Java 18 on
+    private static long unsignedMultiplyHigh(long x, long y) {
+        return Math.multiplyHigh(x, y) + ((x >> 63) & y) + ((y >> 63) & x);
+    }
+
+    // -M^-1 mod 2^64 by Newton iteration; each step doubles the number of correct low bits
+    private static long negativeInverse(long m0) {
+        long x = m0;
+        for (int i = 0; i < 5; i++) {
+            x *= 2 - m0 * x;
+        }
+        return -x;
+    }
+
+    private static long[] toLimbs(BigInteger value, int limbs) {
+        long[] result = new long[limbs];
+        for (int i = 0; i < limbs; i++) {
+            result[i] = value.shiftRight(64 * i).longValue();
+        }
+        return result;
+    }
+}
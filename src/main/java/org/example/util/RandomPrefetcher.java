@@ -0,0 +1,87 @@
+package org.example.util;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps bounded rings of ready IVs and salts, filled by a background daemon thread from a {@link BBSRandom}.
+ * Taking never blocks: when a ring is empty the value is generated on the caller's thread instead.
+ */
+public class RandomPrefetcher implements AutoCloseable {
+    private static final int IV_SIZE = 128;
+    private static final int SALT_SIZE = 16;
+    private static final int CAPACITY = 64;
+
+    private static volatile RandomPrefetcher shared;
+
+    private final BBSRandom source;
+    private final int ivSize;
+    private final int saltSize;
+    private final BlockingQueue<byte[]> ivs;
+    private final BlockingQueue<byte[]> salts;
+    private final Thread worker;
+
+    public RandomPrefetcher(BBSRandom source, int ivSize, int saltSize, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1");
+        this.source = source;
+        this.ivSize = ivSize;
+        this.saltSize = saltSize;
+        this.ivs = new ArrayBlockingQueue<>(capacity);
+        this.salts = new ArrayBlockingQueue<>(capacity);
+        this.worker = new Thread(this::fill, "random-prefetch");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Process-wide prefetcher of 128-byte IVs and 16-byte salts over {@link BBSRandom#shared()}, started on first use.
+     */
+    public static RandomPrefetcher shared() {
+        RandomPrefetcher instance = shared;
+        if (instance != null) return instance;
+        synchronized (RandomPrefetcher.class) {
+            if (shared == null) shared = new RandomPrefetcher(BBSRandom.shared(), IV_SIZE, SALT_SIZE, CAPACITY);
+            return shared;
+        }
+    }
+
+    public byte[] nextIv() {
+        return take(ivs, ivSize);
+    }
+
+    public byte[] nextSalt() {
+        return take(salts, saltSize);
+    }
+
+    public int saltSize() {
+        return saltSize;
+    }
+
+    private byte[] take(BlockingQueue<byte[]> ring, int size) {
+        byte[] value = ring.poll();
+        LockSupport.unpark(worker);
+        return value != null ? value : source.nextBytes(size);
+    }
+
+    // Tops up whichever ring has room and parks once both are full; every take wakes the worker again
+    private void fill() {
+        while (!Thread.currentThread().isInterrupted()) {
+            boolean produced = false;
+            if (ivs.remainingCapacity() > 0) {
+                ivs.offer(source.nextBytes(ivSize));
+                produced = true;
+            }
+            if (salts.remainingCapacity() > 0) {
+                salts.offer(source.nextBytes(saltSize));
+                produced = true;
+            }
+            if (!produced) LockSupport.park(this);
+        }
+    }
+
+    @Override
+    public void close() {
+        worker.interrupt();
+    }
+}
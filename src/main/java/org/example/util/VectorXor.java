@@ -0,0 +1,34 @@
+package org.example.util;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API kernel of {@link DataOperator#xor}. Only compiled by the {@code vector} Maven profile and only loaded
+ * when the incubator module is in the boot layer, so the rest of the code builds and runs without it.
+ */
+final class VectorXor implements DataOperator.XorKernel {
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    VectorXor() {
+    }
+
+    // Shorter ranges have no full vector, and the word loop has no vector setup cost
+    @Override
+    public int minLength() {
+        return SPECIES.length();
+    }
+
+    @Override
+    public void xor(byte[] a, int aOff, byte[] b, int bOff, byte[] out, int outOff, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            ByteVector.fromArray(SPECIES, a, aOff + i)
+                    .lanewise(VectorOperators.XOR, ByteVector.fromArray(SPECIES, b, bOff + i))
+                    .intoArray(out, outOff + i);
+        }
+        if (i < length) DataOperator.xorWords(a, aOff + i, b, bOff + i, out, outOff + i, length - i);
+    }
+}
@@ -0,0 +1,60 @@
+import org.example.util.BBSRandom;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BBSRandomTest {
+    private static final BigInteger MODULUS = blumPrime(1).multiply(blumPrime(2));
+    private static final BigInteger SEED = new BigInteger(1000, new Random(3)).add(BigInteger.TWO);
+    private static final int[] LENGTHS = {1, 7, 13, 64, 128, 3};
+
+    @Test
+    void testSingleBitSequenceMatchesReference() {
+        assertMatchesReference(1);
+    }
+
+    @Test
+    void testMultiBitSequenceMatchesReference() {
+        assertMatchesReference(3);
+        assertMatchesReference(BBSRandom.secureBitsPerSquaring(MODULUS));
+    }
+
+    @Test
+    void testSecureBitsPerSquaring() {
+        assertEquals(10, BBSRandom.secureBitsPerSquaring(BigInteger.ONE.shiftLeft(1023)));
+        assertEquals(9, BBSRandom.secureBitsPerSquaring(BigInteger.ONE.shiftLeft(1022)));
+        assertThrows(IllegalArgumentException.class, () -> new BBSRandom(MODULUS, SEED, 11));
+    }
+
+    @Test
+    void testSharedInstance() {
+        assertSame(BBSRandom.shared(), BBSRandom.shared());
+        assertEquals(16, BBSRandom.shared().nextBytes(16).length);
+    }
+
+    // One squaring per step, its low bits appended least significant first, as the original one-bit generator did
+    private static void assertMatchesReference(int bitsPerSquaring) {
+        BBSRandom random = new BBSRandom(MODULUS, SEED, bitsPerSquaring);
+        BigInteger state = SEED;
+        for (int length : LENGTHS) {
+            byte[] expected = new byte[length];
+            int bit = 0;
+            while (bit < length * 8) {
+                state = state.modPow(BigInteger.TWO, MODULUS);
+                for (int j = 0; j < bitsPerSquaring && bit < length * 8; j++, bit++) {
+                    if (state.testBit(j)) expected[bit / 8] |= (byte) (1 << (bit % 8));
+                }
+            }
+            assertArrayEquals(expected, random.nextBytes(length), "length " + length + ", bits " + bitsPerSquaring);
+        }
+    }
+
+    private static BigInteger blumPrime(long seed) {
+        BigInteger prime = BigInteger.probablePrime(512, new Random(seed));
+        while (!prime.testBit(1)) prime = prime.nextProbablePrime();
+        return prime;
+    }
+}
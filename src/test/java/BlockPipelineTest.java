@@ -0,0 +1,98 @@
+import org.example.util.BlockPipeline;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlockPipelineTest {
+    @Test
+    void testChunksArriveInOrderWithSlack() throws Exception {
+        byte[] data = new byte[10_000];
+        new Random(42).nextBytes(data);
+        AtomicInteger lastChunks = new AtomicInteger();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new BlockPipeline(256, 4, 3).run(new ByteArrayInputStream(data), data.length, out, (buffer, length, last) -> {
+            for (int i = 0; i < length; i++) buffer[i] ^= 0x5A;
+            if (!last) return length;
+            lastChunks.incrementAndGet();
+            Arrays.fill(buffer, length, length + 4, (byte) 1);
+            return length + 4;
+        });
+
+        byte[] expected = Arrays.copyOf(data, data.length + 4);
+        for (int i = 0; i < data.length; i++) expected[i] ^= 0x5A;
+        Arrays.fill(expected, data.length, expected.length, (byte) 1);
+        assertArrayEquals(expected, out.toByteArray());
+        assertEquals(1, lastChunks.get());
+    }
+
+    @Test
+    void testTruncatedInputFails() {
+        byte[] data = new byte[1000];
+        assertThrows(IOException.class, () -> new BlockPipeline(128, 0, 2)
+                .run(new ByteArrayInputStream(data), 2000, OutputStream.nullOutputStream(), (b, l, last) -> l));
+    }
+
+    @Test
+    void testWriterFailureIsReported() {
+        byte[] data = new byte[1000];
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("disk full");
+            }
+        };
+        IOException e = assertThrows(IOException.class, () -> new BlockPipeline(128, 0, 2)
+                .run(new ByteArrayInputStream(data), data.length, failing, (b, l, last) -> l));
+        assertEquals("disk full", e.getMessage());
+    }
+
+    @Test
+    void testStageFailureJoinsWorkersAndKeepsTheirFailure() {
+        byte[] data = new byte[1000];
+        AtomicReference<Thread> reader = new AtomicReference<>();
+        AtomicReference<Thread> writer = new AtomicReference<>();
+        InputStream in = new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                reader.set(Thread.currentThread());
+                return super.read(b, off, len);
+            }
+        };
+        OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                writer.set(Thread.currentThread());
+                throw new IOException("disk full");
+            }
+        };
+        AtomicInteger calls = new AtomicInteger();
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> new BlockPipeline(128, 0, 2)
+                .run(in, data.length, failing, (b, l, last) -> {
+                    if (calls.incrementAndGet() == 1) return l;
+                    try {
+                        while (writer.get() == null) Thread.sleep(1);
+                        writer.get().join();
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new IllegalStateException("stage failed");
+                }));
+
+        assertEquals(1, e.getSuppressed().length);
+        assertEquals("disk full", e.getSuppressed()[0].getMessage());
+        assertFalse(reader.get().isAlive());
+        assertFalse(writer.get().isAlive());
+    }
+}
@@ -0,0 +1,55 @@
+import org.example.modules.Blowfish;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlowfishTest {
+    private final byte[] key = "ThisIsASecretKey".getBytes();
+
+    @Test
+    void testNewInstanceDoesNotChangeExistingOne() {
+        byte[] block = new byte[64];
+        byte[] roundKey = new byte[8];
+        new Random(42).nextBytes(block);
+
+        Blowfish blowfish = new Blowfish(key);
+        byte[] before = blowfish.applyF(block, roundKey);
+        new Blowfish("AnotherSecretKey".getBytes());
+        Blowfish same = new Blowfish(key);
+
+        assertArrayEquals(before, blowfish.applyF(block, roundKey));
+        assertArrayEquals(before, same.applyF(block, roundKey),
+                "Base S-boxes must not be modified by key mixing");
+    }
+
+    @Test
+    void testWordVariantMatchesByteVariant() {
+        Random random = new Random(7);
+        byte[] block = new byte[64];
+        byte[] roundKey = new byte[8];
+        random.nextBytes(block);
+        random.nextBytes(roundKey);
+
+        Blowfish blowfish = new Blowfish(key);
+        byte[] expected = blowfish.applyF(block, roundKey);
+
+        int[] words = new int[16];
+        ByteBuffer.wrap(block).asIntBuffer().get(words);
+        int[] keyWords = new int[2];
+        ByteBuffer.wrap(roundKey).asIntBuffer().get(keyWords);
+        int[] out = new int[16];
+        blowfish.applyF(words, 0, keyWords, 0, 2, out, 0);
+
+        byte[] actual = new byte[64];
+        ByteBuffer.wrap(actual).asIntBuffer().put(out);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    void testShortKey() {
+        assertThrows(IllegalArgumentException.class, () -> new Blowfish(new byte[7]));
+    }
+}
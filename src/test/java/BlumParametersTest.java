@@ -0,0 +1,57 @@
+import org.example.util.BBSRandom;
+import org.example.util.BlumParameters;
+import org.example.util.DataOperator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BlumParametersTest {
+    @Test
+    void testCreatedOnceAndLoadedAfterwards(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("bbs.properties");
+        BigInteger created = BlumParameters.loadOrCreate(file);
+
+        assertTrue(Files.exists(file));
+        assertEquals(created, BlumParameters.loadOrCreate(file));
+        assertEquals(1, created.mod(BigInteger.valueOf(4)).intValue());
+        assertEquals(16, new BBSRandom(created, 1).nextBytes(16).length);
+    }
+
+    @Test
+    void testRegenerateReplacesModulus(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("bbs.properties");
+        BigInteger first = BlumParameters.loadOrCreate(file);
+        BigInteger second = BlumParameters.regenerate(file);
+
+        assertNotEquals(first, second);
+        assertEquals(second, BlumParameters.loadOrCreate(file));
+    }
+
+    @Test
+    void testCorruptedFileIsRejected(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("bbs.properties");
+        String hex = BlumParameters.loadOrCreate(file).toString(16);
+        String flipped = (hex.charAt(5) == '1' ? '2' : '1') + "";
+        Files.writeString(file, Files.readString(file).replace(hex, hex.substring(0, 5) + flipped + hex.substring(6)));
+
+        assertThrows(IOException.class, () -> BlumParameters.loadOrCreate(file));
+    }
+
+    @Test
+    void testInvalidModulusIsRejected(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("bbs.properties");
+        BigInteger prime = BigInteger.ONE.shiftLeft(1023).nextProbablePrime();
+        String hex = prime.toString(16);
+        String checksum = DataOperator.bytesToHex(MessageDigest.getInstance("SHA-256").digest(hex.getBytes()));
+        Files.writeString(file, "modulus=" + hex + "\nchecksum=" + checksum + "\n");
+
+        assertThrows(IOException.class, () -> BlumParameters.loadOrCreate(file));
+    }
+}
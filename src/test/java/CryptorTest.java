@@ -1,4 +1,6 @@
+import org.example.CipherMode;
 import org.example.Cryptor;
+import org.example.ProgressListener;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
@@ -9,8 +11,24 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
 
 public class CryptorTest {
     private Cryptor cryptor;
@@ -79,9 +97,380 @@ public class CryptorTest {
         assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), decrypted);
     }
 
+    @Test
+    void testEncryptIntoCallerArray() {
+        for (int size : new int[]{0, 1, 127, 128, 129, 10_000}) {
+            byte[] data = new byte[size];
+            new Random(size).nextBytes(data);
+            byte[] input = new byte[size + 9];
+            System.arraycopy(data, 0, input, 9, size);
+
+            byte[] encrypted = new byte[Cryptor.encryptedSize(size) + 3];
+            assertEquals(Cryptor.encryptedSize(size), cryptor.encrypt(input, 9, size, key, encrypted, 3));
+            byte[] exact = Arrays.copyOfRange(encrypted, 3, encrypted.length);
+            if (size > 0) assertArrayEquals(data, cryptor.decrypt(exact, key), size + " bytes");
+
+            byte[] decrypted = new byte[Cryptor.decryptedCapacity(exact.length) + 5];
+            assertEquals(size, cryptor.decrypt(encrypted, 3, exact.length, key, decrypted, 5));
+            assertArrayEquals(data, Arrays.copyOfRange(decrypted, 5, 5 + size), size + " bytes");
+        }
+    }
+
+    @Test
+    void testEncryptBuffersMatchesArrays() {
+        for (int size : new int[]{0, 1, 128, 200_000}) {
+            byte[] data = new byte[size];
+            new Random(size).nextBytes(data);
+
+            for (boolean direct : new boolean[]{false, true}) {
+                ByteBuffer in = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+                in.put(data).flip();
+                int encryptedSize = Cryptor.encryptedSize(size);
+                ByteBuffer encrypted = direct ? ByteBuffer.allocateDirect(encryptedSize) : ByteBuffer.allocate(encryptedSize);
+                assertEquals(encryptedSize, cryptor.encrypt(in, encrypted, key));
+                assertFalse(in.hasRemaining());
+                assertFalse(encrypted.hasRemaining());
+
+                byte[] encryptedBytes = new byte[encryptedSize];
+                encrypted.flip().get(encryptedBytes).flip();
+                byte[] viaArray = new byte[Cryptor.decryptedCapacity(encryptedSize)];
+                assertEquals(size, cryptor.decrypt(encryptedBytes, 0, encryptedSize, key, viaArray, 0));
+                assertArrayEquals(data, Arrays.copyOf(viaArray, size), size + " bytes, direct " + direct);
+
+                int capacity = Cryptor.decryptedCapacity(encryptedSize);
+                ByteBuffer decrypted = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+                assertEquals(size, cryptor.decrypt(encrypted, decrypted, key));
+                assertEquals(size, decrypted.position());
+                byte[] plain = new byte[size];
+                decrypted.flip().get(plain);
+                assertArrayEquals(data, plain, size + " bytes, direct " + direct);
+            }
+        }
+    }
+
+    @Test
+    void testEncryptRejectsSmallOutput() {
+        byte[] small = new byte[Cryptor.encryptedSize(TEST_TEXT.length) - 1];
+        assertThrows(IllegalArgumentException.class,
+                () -> cryptor.encrypt(TEST_TEXT, 0, TEST_TEXT.length, key, small, 0));
+        assertThrows(IllegalArgumentException.class,
+                () -> cryptor.decrypt(ByteBuffer.allocate(3 * 128), ByteBuffer.allocateDirect(128), key));
+    }
+
     @Test
     void testInvalidKey() {
         byte[] shortKey = "short".getBytes(StandardCharsets.UTF_8);
         assertThrows(IllegalArgumentException.class, () -> cryptor.encrypt(TEST_TEXT, shortKey));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testParallelFileDecryption(@TempDir Path dir) throws Exception {
+        byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        for (int size : new int[]{(2 << 20) - 128, (5 << 19) + 77}) {
+            byte[] data = new byte[size];
+            new Random(size).nextBytes(data);
+            File plain = Files.write(dir.resolve("plain"), data).toFile();
+            File encrypted = dir.resolve("encrypted").toFile();
+            File decrypted = dir.resolve("decrypted").toFile();
+
+            cryptor.encryptFile(plain, encrypted, key, salt);
+            cryptor.setParallelism(4);
+            cryptor.decryptFile(encrypted, decrypted, key);
+            cryptor.setParallelism(1);
+
+            assertArrayEquals(data, Files.readAllBytes(decrypted.toPath()));
+        }
+    }
+
+    @Test
+    void testTruncatedCiphertextIsRejectedInParallel(@TempDir Path dir) throws Exception {
+        byte[] data = new byte[(5 << 19) + 77];
+        new Random(3).nextBytes(data);
+        File plain = Files.write(dir.resolve("plain"), data).toFile();
+        File encrypted = dir.resolve("encrypted").toFile();
+        cryptor.encryptFile(plain, encrypted, key, "0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+
+        // Dropping bytes inside the ciphertext keeps the trailer intact but leaves a partial last block
+        byte[] bytes = Files.readAllBytes(encrypted.toPath());
+        byte[] truncated = new byte[bytes.length - 5];
+        System.arraycopy(bytes, 0, truncated, 0, 1000);
+        System.arraycopy(bytes, 1005, truncated, 1000, bytes.length - 1005);
+        Files.write(encrypted.toPath(), truncated);
+
+        for (int parallelism : new int[]{1, 4}) {
+            cryptor.setParallelism(parallelism);
+            IOException e = assertThrows(IOException.class,
+                    () -> cryptor.decryptFile(encrypted, dir.resolve("decrypted").toFile(), key));
+            assertEquals("Invalid encrypted block", e.getMessage(), "parallelism " + parallelism);
+        }
+        cryptor.setParallelism(1);
+    }
+
+    @Test
+    void testCtrFileRoundTrip(@TempDir Path dir) throws Exception {
+        byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        cryptor.setMode(CipherMode.CTR);
+        for (int size : new int[]{0, 1, 128, (5 << 19) + 77}) {
+            byte[] data = new byte[size];
+            new Random(size).nextBytes(data);
+            File plain = Files.write(dir.resolve("plain"), data).toFile();
+            File encrypted = dir.resolve("encrypted").toFile();
+            File decrypted = dir.resolve("decrypted").toFile();
+
+            cryptor.encryptFile(plain, encrypted, key, salt);
+            assertEquals(size + 128 + 32 + 16, encrypted.length(), "CTR output must not be padded");
+            new Cryptor().decryptFile(encrypted, decrypted, key);
+
+            assertArrayEquals(data, Files.readAllBytes(decrypted.toPath()));
+        }
+    }
+
+    @Test
+    void testSegmentedFileRoundTrip(@TempDir Path dir) throws Exception {
+        byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        cryptor.setMode(CipherMode.SEGMENTED);
+        cryptor.setParallelism(3);
+        for (int size : new int[]{0, 1, 128, 1 << 20, (5 << 19) + 77}) {
+            byte[] data = new byte[size];
+            new Random(size).nextBytes(data);
+            File plain = Files.write(dir.resolve("plain"), data).toFile();
+            File encrypted = dir.resolve("encrypted").toFile();
+            File decrypted = dir.resolve("decrypted").toFile();
+
+            cryptor.encryptFile(plain, encrypted, key, salt);
+            new Cryptor().decryptFile(encrypted, decrypted, key);
+
+            assertArrayEquals(data, Files.readAllBytes(decrypted.toPath()));
+            assertArrayEquals(salt, cryptor.readSalt(encrypted));
+        }
+    }
+
+    @Test
+    void testProgressListenerReachesTotals(@TempDir Path dir) throws Exception {
+        byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[(5 << 20) + 77];
+        new Random(5).nextBytes(data);
+        File plain = Files.write(dir.resolve("plain"), data).toFile();
+        File encrypted = dir.resolve("encrypted").toFile();
+        File decrypted = dir.resolve("decrypted").toFile();
+
+        for (CipherMode mode : CipherMode.values()) {
+            long[] counts = new long[4];
+            ProgressListener listener = new ProgressListener() {
+                @Override
+                public void fileStarted(File file, long totalBytes) {
+                    counts[0]++;
+                    counts[1] += totalBytes;
+                }
+
+                @Override
+                public synchronized void bytesProcessed(long bytes) {
+                    counts[2] += bytes;
+                }
+
+                @Override
+                public void fileFinished(File file) {
+                    counts[3]++;
+                }
+            };
+            cryptor.setMode(mode);
+            cryptor.setParallelism(2);
+            cryptor.setProgressListener(listener);
+
+            cryptor.encryptFile(plain, encrypted, key, salt);
+            assertArrayEquals(new long[]{1, data.length, data.length, 1}, counts, mode + " encryption");
+
+            Arrays.fill(counts, 0);
+            cryptor.decryptFile(encrypted, decrypted, key);
+            assertEquals(1, counts[0], mode + " decryption");
+            assertEquals(counts[1], counts[2], mode + " decryption");
+            assertEquals(1, counts[3], mode + " decryption");
+            assertArrayEquals(data, Files.readAllBytes(decrypted.toPath()));
+        }
+    }
+
+    @Test
+    void testFailedDecryptionReportsNoProgress(@TempDir Path dir) throws Exception {
+        File plain = Files.write(dir.resolve("plain"), new byte[1000]).toFile();
+        File encrypted = dir.resolve("encrypted").toFile();
+        cryptor.encryptFile(plain, encrypted, key, "0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+
+        List<String> calls = new ArrayList<>();
+        Cryptor decryptor = new Cryptor();
+        decryptor.setProgressListener(new ProgressListener() {
+            @Override
+            public void fileStarted(File file, long totalBytes) {
+                calls.add("started");
+            }
+
+            @Override
+            public void fileFinished(File file) {
+                calls.add("finished");
+            }
+        });
+        byte[] wrongKey = key.clone();
+        wrongKey[0] ^= 1;
+
+        assertThrows(IllegalArgumentException.class,
+                () -> decryptor.decryptFile(encrypted, dir.resolve("decrypted").toFile(), wrongKey));
+        assertEquals(List.of(), calls);
+    }
+
+    @Test
+    void testSeekableChannelReadsAnyPosition(@TempDir Path dir) throws Exception {
+        byte[] data = new byte[(5 << 19) + 77];
+        new Random(11).nextBytes(data);
+        File plain = Files.write(dir.resolve("plain"), data).toFile();
+        File encrypted = dir.resolve("encrypted").toFile();
+        cryptor.setMode(CipherMode.SEGMENTED);
+        cryptor.encryptFile(plain, encrypted, key, "0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+
+        Random random = new Random(12);
+        try (SeekableByteChannel channel = cryptor.openSeekable(encrypted, key)) {
+            assertEquals(data.length, channel.size());
+            for (int i = 0; i < 50; i++) {
+                int position = random.nextInt(data.length);
+                ByteBuffer buffer = ByteBuffer.allocate(random.nextInt(3 << 19));
+                channel.position(position);
+                int read = channel.read(buffer);
+
+                assertEquals(Math.min(buffer.capacity(), data.length - position), read);
+                assertArrayEquals(Arrays.copyOfRange(data, position, position + read), Arrays.copyOf(buffer.array(), read));
+                assertEquals(position + read, channel.position());
+            }
+            channel.position(data.length);
+            assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+        }
+
+        assertThrows(IllegalArgumentException.class,
+                () -> cryptor.openSeekable(encrypted, "DifferentKey1234567890AB".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testMasterKeyFilesRoundTrip(@TempDir Path dir) throws Exception {
+        byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        byte[] data = new byte[(3 << 19) + 9];
+        new Random(21).nextBytes(data);
+        File plain = Files.write(dir.resolve("plain"), data).toFile();
+
+        for (CipherMode mode : CipherMode.values()) {
+            cryptor.setMode(mode);
+            File first = dir.resolve("first-" + mode).toFile();
+            File second = dir.resolve("second-" + mode).toFile();
+            cryptor.encryptFile(plain, first, key, salt, "nonce-0000000001".getBytes(StandardCharsets.UTF_8));
+            cryptor.encryptFile(plain, second, key, salt, "nonce-0000000002".getBytes(StandardCharsets.UTF_8));
+            assertArrayEquals(salt, cryptor.readSalt(first));
+
+            for (File encrypted : new File[]{first, second}) {
+                File decrypted = dir.resolve("decrypted").toFile();
+                new Cryptor().decryptFile(encrypted, decrypted, key);
+                assertArrayEquals(data, Files.readAllBytes(decrypted.toPath()));
+            }
+            assertThrows(IllegalArgumentException.class, () -> new Cryptor().decryptFile(first, dir.resolve("wrong").toFile(),
+                    "DifferentKey1234567890AB".getBytes(StandardCharsets.UTF_8)));
+        }
+
+        try (SeekableByteChannel channel = cryptor.openSeekable(dir.resolve("first-SEGMENTED").toFile(), key)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1000);
+            channel.position(1 << 20).read(buffer);
+            assertArrayEquals(Arrays.copyOfRange(data, 1 << 20, (1 << 20) + 1000), buffer.array());
+        }
+    }
+
+    @Test
+    void testMappedIoRoundTripInPlace(@TempDir Path dir) throws Exception {
+        byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        cryptor.setMappedIo(true);
+        for (CipherMode mode : CipherMode.values()) {
+            byte[] data = new byte[(3 << 19) + 5];
+            new Random(mode.ordinal()).nextBytes(data);
+            File file = Files.write(dir.resolve("data-" + mode), data).toFile();
+
+            cryptor.setMode(mode);
+            cryptor.encryptFile(file, file, key, salt);
+            assertFalse(Arrays.equals(data, Files.readAllBytes(file.toPath())));
+            cryptor.decryptFile(file, file, key);
+
+            assertArrayEquals(data, Files.readAllBytes(file.toPath()));
+        }
+    }
+
+    @Test
+    void testStreamsMatchFileFormat(@TempDir Path dir) throws Exception {
+        byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        Random random = new Random(3);
+        for (CipherMode mode : new CipherMode[]{CipherMode.CBC, CipherMode.CTR}) {
+            cryptor.setMode(mode);
+            for (int size : new int[]{0, 1, 128, 1000, 10_000}) {
+                byte[] data = new byte[size];
+                random.nextBytes(data);
+
+                File encrypted = dir.resolve("stream-" + mode + "-" + size).toFile();
+                try (OutputStream out = cryptor.encryptingStream(new FileOutputStream(encrypted), key, salt)) {
+                    for (int off = 0; off < size; ) {
+                        int n = Math.min(size - off, 1 + random.nextInt(300));
+                        out.write(data, off, n);
+                        off += n;
+                    }
+                }
+                File decrypted = dir.resolve("decrypted").toFile();
+                cryptor.decryptFile(encrypted, decrypted, key);
+                assertArrayEquals(data, Files.readAllBytes(decrypted.toPath()));
+
+                try (InputStream in = cryptor.decryptingStream(new FileInputStream(encrypted), key)) {
+                    assertArrayEquals(data, in.readAllBytes());
+                }
+            }
+        }
+    }
+
+    @Test
+    void testDecryptingStreamRejectsWrongKey(@TempDir Path dir) throws Exception {
+        File plain = Files.write(dir.resolve("plain"), TEST_TEXT).toFile();
+        File encrypted = dir.resolve("encrypted").toFile();
+        cryptor.encryptFile(plain, encrypted, key, "0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+
+        byte[] wrongKey = "DifferentKey1234567890AB".getBytes(StandardCharsets.UTF_8);
+        try (InputStream in = cryptor.decryptingStream(new FileInputStream(encrypted), wrongKey)) {
+            assertThrows(IOException.class, in::readAllBytes);
+        }
+    }
+
+    @Test
+    void testInvalidPaddingKeepsRawBytesOnEveryPath(@TempDir Path dir) throws Exception {
+        // In CBC, flipping the top bit of the second to last ciphertext block makes the padding byte exceed 128
+        byte[] data = new byte[10];
+        new Random(21).nextBytes(data);
+        byte[] encrypted = cryptor.encrypt(data, key);
+        encrypted[encrypted.length - 128 - 1] ^= (byte) 0x80;
+
+        assertEquals(128, cryptor.decrypt(encrypted, key).length);
+        assertEquals(128, cryptor.decrypt(ByteBuffer.wrap(encrypted), ByteBuffer.allocateDirect(128), key));
+        assertEquals(128, cryptor.decrypt(ByteBuffer.allocateDirect(encrypted.length).put(encrypted).flip(),
+                ByteBuffer.allocateDirect(128), key));
+
+        byte[] large = new byte[(1 << 20) + 10];
+        new Random(22).nextBytes(large);
+        File plain = Files.write(dir.resolve("plain"), large).toFile();
+        File file = dir.resolve("encrypted").toFile();
+        cryptor.encryptFile(plain, file, key, "0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+        int cipherLength = (large.length / 128 + 1) * 128;
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(cipherLength - 1);
+            int b = raw.read();
+            raw.seek(cipherLength - 1);
+            raw.write(b ^ 0x80);
+        }
+
+        File decrypted = dir.resolve("decrypted").toFile();
+        for (int parallelism : new int[]{1, 4}) {
+            cryptor.setParallelism(parallelism);
+            cryptor.decryptFile(file, decrypted, key);
+            assertEquals(cipherLength, decrypted.length(), "parallelism " + parallelism);
+        }
+        cryptor.setParallelism(1);
+        try (InputStream in = cryptor.decryptingStream(new FileInputStream(file), key)) {
+            assertEquals(cipherLength, in.readAllBytes().length);
+        }
+    }
+}
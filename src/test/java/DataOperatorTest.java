@@ -2,6 +2,7 @@ import org.example.util.DataOperator;
 import org.junit.jupiter.api.Test;
 
 import java.util.Arrays;
+import java.util.Random;
 
 import static org.example.util.DataOperator.bytesToHex;
 import static org.example.util.DataOperator.hexToBytes;
@@ -23,6 +24,32 @@ public class DataOperatorTest {
         assertArrayEquals(expected, result);
     }
 
+    @Test
+    public void testXorRangesMatchBytewiseXor() {
+        Random random = new Random(3);
+        for (int length : new int[]{0, 1, 7, 8, 9, 31, 64, 65, 128, 1000}) {
+            byte[] a = new byte[length + 5];
+            byte[] b = new byte[length + 3];
+            random.nextBytes(a);
+            random.nextBytes(b);
+            byte[] expected = new byte[length + 2];
+            for (int i = 0; i < length; i++) expected[2 + i] = (byte) (a[5 + i] ^ b[3 + i]);
+
+            byte[] out = new byte[length + 2];
+            DataOperator.xor(a, 5, b, 3, out, 2, length);
+            assertArrayEquals(expected, out, "length " + length);
+
+            DataOperator.xor(a, 5, b, 3, a, 5, length);
+            assertArrayEquals(Arrays.copyOfRange(expected, 2, length + 2), Arrays.copyOfRange(a, 5, length + 5),
+                    "in place, length " + length);
+        }
+    }
+
+    @Test
+    public void testVectorApiIsUsedWhenModuleIsPresent() {
+        assertEquals(ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent(), DataOperator.isVectorized());
+    }
+
     @Test
     public void testUnionArrays() {
         byte[] a = {0, 1, 2};
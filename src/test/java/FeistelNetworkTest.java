@@ -4,6 +4,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.BeforeEach;
 
 import javax.crypto.IllegalBlockSizeException;
+import java.nio.ByteBuffer;
 import java.security.SecureRandom;
 import java.util.Arrays;
 
@@ -14,6 +15,7 @@ public class FeistelNetworkTest {
     private FeistelNetwork feistel;
     private final byte[] testKey = "ThisIsASecretKey12341234567890123456890123456789012345678901234567890123".getBytes();
     private final byte[] testBlock = new byte[128];
+    private static final int BLOCK_OFFSET = 17;
 
     @BeforeEach
     void setUp() {
@@ -65,6 +67,60 @@ public class FeistelNetworkTest {
         assertArrayEquals(block, decrypted, "Decrypted block should match original");
     }
 
+    @Test
+    void testSameKeyDifferentInstancesSameOutput() throws Exception {
+        FeistelNetwork other = new FeistelNetwork(testKey.clone());
+        byte[] encrypted1 = feistel.encryptBlock(testBlock);
+        byte[] encrypted2 = other.encryptBlock(testBlock);
+
+        assertArrayEquals(encrypted1, encrypted2,
+                "Round keys must depend only on the key");
+    }
+
+    @Test
+    void testOffsetBlockMatchesArrayBlock() throws Exception {
+        byte[] expected = feistel.encryptBlock(testBlock);
+
+        byte[] in = new byte[BLOCK_OFFSET + 128];
+        System.arraycopy(testBlock, 0, in, BLOCK_OFFSET, 128);
+        byte[] out = new byte[BLOCK_OFFSET + 128];
+        feistel.encryptBlock(in, BLOCK_OFFSET, out, BLOCK_OFFSET);
+        assertArrayEquals(expected, Arrays.copyOfRange(out, BLOCK_OFFSET, BLOCK_OFFSET + 128));
+
+        feistel.decryptBlock(out, BLOCK_OFFSET, out, BLOCK_OFFSET);
+        assertArrayEquals(testBlock, Arrays.copyOfRange(out, BLOCK_OFFSET, BLOCK_OFFSET + 128),
+                "In-place decryption should restore the original block");
+    }
+
+    @Test
+    void testByteBufferBlockMatchesArrayBlock() throws Exception {
+        byte[] expected = feistel.encryptBlock(testBlock);
+
+        ByteBuffer in = ByteBuffer.allocateDirect(128).put(testBlock).flip();
+        ByteBuffer out = ByteBuffer.allocateDirect(128);
+        feistel.encryptBlock(in, out);
+        assertFalse(in.hasRemaining());
+        assertFalse(out.hasRemaining());
+
+        byte[] actual = new byte[128];
+        out.flip().get(actual);
+        assertArrayEquals(expected, actual);
+
+        ByteBuffer decrypted = ByteBuffer.allocate(128);
+        feistel.decryptBlock(ByteBuffer.wrap(actual), decrypted);
+        assertArrayEquals(testBlock, decrypted.array());
+    }
+
+    @Test
+    void testOffsetBlockOutOfBounds() {
+        assertThrows(IllegalBlockSizeException.class,
+                () -> feistel.encryptBlock(new byte[200], 100, new byte[200], 0),
+                "Should throw when input has less than 128 bytes after offset");
+        assertThrows(IllegalBlockSizeException.class,
+                () -> feistel.encryptBlock(ByteBuffer.allocate(127), ByteBuffer.allocate(128)),
+                "Should throw when input buffer has less than 128 bytes remaining");
+    }
+
     @Test
     void testInvalidBlockSize() {
         byte[] shortBlock = new byte[127]; // 1 byte less than required
@@ -149,6 +205,36 @@ public class FeistelNetworkTest {
                 "All ones block should decrypt correctly");
     }
 
+    @Test
+    void testBatchMatchesSingleBlockPath() throws Exception {
+        for (int count : new int[]{0, 1, 3, FeistelNetwork.BATCH_BLOCKS, FeistelNetwork.BATCH_BLOCKS + 1, 13}) {
+            byte[] input = new byte[BLOCK_OFFSET + count * 128];
+            new SecureRandom().nextBytes(input);
+
+            byte[] expected = new byte[count * 128];
+            for (int i = 0; i < count; i++) {
+                feistel.encryptBlock(input, BLOCK_OFFSET + i * 128, expected, i * 128);
+            }
+            byte[] encrypted = new byte[5 + count * 128];
+            feistel.encryptBlocks(input, BLOCK_OFFSET, count, encrypted, 5);
+            assertArrayEquals(expected, Arrays.copyOfRange(encrypted, 5, encrypted.length), count + " blocks");
+
+            for (int i = 0; i < count; i++) {
+                feistel.decryptBlock(expected, i * 128, expected, i * 128);
+            }
+            feistel.decryptBlocks(encrypted, 5, count, encrypted, 5);
+            assertArrayEquals(expected, Arrays.copyOfRange(encrypted, 5, encrypted.length), count + " blocks in place");
+            assertArrayEquals(Arrays.copyOfRange(input, BLOCK_OFFSET, input.length), expected);
+        }
+    }
+
+    @Test
+    void testBatchRejectsShortBuffers() {
+        byte[] buffer = new byte[3 * 128];
+        assertThrows(IllegalBlockSizeException.class, () -> feistel.encryptBlocks(buffer, 1, 3, buffer, 0));
+        assertThrows(IllegalBlockSizeException.class, () -> feistel.decryptBlocks(buffer, 0, 3, new byte[2 * 128], 0));
+    }
+
     @Test
     void testPBlockIntegration() {
         byte[] testData = new byte[128];
@@ -0,0 +1,56 @@
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.example.Cryptor;
+import org.example.events.FlightRecording;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FlightRecordingTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void testFileEventsAreRecorded() throws Exception {
+        byte[] data = new byte[100_000];
+        new Random(1).nextBytes(data);
+        File plain = Files.write(dir.resolve("plain.bin"), data).toFile();
+        File encrypted = dir.resolve("plain.enc").toFile();
+        File decrypted = dir.resolve("plain.dec").toFile();
+        byte[] key = "ThisIsAStrongKey1234567890AB1234".getBytes(StandardCharsets.UTF_8);
+        byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        Path recordingFile = dir.resolve("run.jfr");
+
+        try (Recording recording = FlightRecording.start(recordingFile)) {
+            Cryptor cryptor = new Cryptor();
+            cryptor.encryptFile(plain, encrypted, key, salt);
+            cryptor.decryptFile(encrypted, decrypted, key);
+            recording.stop();
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(recordingFile).stream()
+                .filter(event -> event.getEventType().getName().equals("org.example.FileCrypt"))
+                .toList();
+        assertEquals(2, events.size());
+
+        RecordedEvent encryption = events.get(0);
+        assertEquals("encrypt", encryption.getString("operation"));
+        assertEquals("CBC", encryption.getString("mode"));
+        assertEquals(data.length, encryption.getLong("inputSize"));
+        assertEquals(encrypted.length(), encryption.getLong("outputSize"));
+
+        RecordedEvent decryption = events.get(1);
+        assertEquals("decrypt", decryption.getString("operation"));
+        assertEquals(encrypted.length(), decryption.getLong("inputSize"));
+        assertEquals(data.length, decryption.getLong("outputSize"));
+    }
+}
@@ -0,0 +1,42 @@
+import org.example.key.Hkdf;
+import org.example.util.DataOperator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class HkdfTest {
+    private static final byte[] IKM = filled(22, 0x0b);
+
+    @Test
+    void testRfc5869Case1() {
+        byte[] salt = new byte[13];
+        for (int i = 0; i < salt.length; i++) salt[i] = (byte) i;
+        byte[] info = new byte[10];
+        for (int i = 0; i < info.length; i++) info[i] = (byte) (0xf0 + i);
+
+        byte[] okm = Hkdf.derive(IKM, salt, info, 42);
+        assertEquals("3cb25f25faacd57a90434f64d0362f2a2d2d0a90cf1a5a4c5db02d56ecc4c5bf34007208d5b887185865",
+                DataOperator.bytesToHex(okm));
+    }
+
+    @Test
+    void testRfc5869Case3EmptySaltAndInfo() {
+        byte[] okm = Hkdf.derive(IKM, new byte[0], new byte[0], 42);
+        assertEquals("8da4e775a563c18f715f802a063c5a31b8a11f5c5ee1879ec3454e5f3c738d2d9d201395faa4b61a96c8",
+                DataOperator.bytesToHex(okm));
+    }
+
+    @Test
+    void testDifferentSaltsGiveDifferentKeys() {
+        byte[] info = "file".getBytes();
+        assertFalse(Arrays.equals(Hkdf.derive(IKM, filled(16, 1), info, 32), Hkdf.derive(IKM, filled(16, 2), info, 32)));
+    }
+
+    private static byte[] filled(int length, int value) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) value);
+        return bytes;
+    }
+}
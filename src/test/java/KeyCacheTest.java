@@ -0,0 +1,99 @@
+import org.example.key.KeyCache;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyCacheTest {
+    private final AtomicInteger derivations = new AtomicInteger();
+
+    private Supplier<byte[]> derive(int value) {
+        return () -> {
+            derivations.incrementAndGet();
+            return new byte[]{(byte) value, 1, 2, 3};
+        };
+    }
+
+    @Test
+    void testRepeatedLookupDerivesOnce() {
+        KeyCache cache = new KeyCache(4, Duration.ofMinutes(1));
+        byte[] first = cache.get("pass", new byte[]{1}, 32, derive(7));
+        first[0] = 0;
+        byte[] second = cache.get("pass", new byte[]{1}, 32, derive(7));
+
+        assertEquals(1, derivations.get());
+        assertEquals(7, second[0], "Callers must receive copies of the cached key");
+    }
+
+    @Test
+    void testParametersAreKeptApart() {
+        KeyCache cache = new KeyCache(8, Duration.ofMinutes(1));
+        cache.get("pass", new byte[]{1}, 32, derive(1));
+        cache.get("pass", new byte[]{2}, 32, derive(2));
+        cache.get("pass", new byte[]{1}, 16, derive(3));
+        cache.get("pas", new byte[]{'s', 1}, 32, derive(4));
+
+        assertEquals(4, derivations.get());
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    void testLeastRecentlyUsedIsEvicted() {
+        KeyCache cache = new KeyCache(2, Duration.ofMinutes(1));
+        cache.get("a", new byte[0], 32, derive(1));
+        cache.get("b", new byte[0], 32, derive(2));
+        cache.get("a", new byte[0], 32, derive(1));
+        cache.get("c", new byte[0], 32, derive(3));
+        assertEquals(3, derivations.get());
+
+        cache.get("a", new byte[0], 32, derive(1));
+        assertEquals(3, derivations.get(), "Recently used key must survive");
+        cache.get("b", new byte[0], 32, derive(2));
+        assertEquals(4, derivations.get(), "Least recently used key must be evicted");
+    }
+
+    @Test
+    void testIdleKeysExpire() throws InterruptedException {
+        KeyCache cache = new KeyCache(4, Duration.ofMillis(50));
+        cache.get("pass", new byte[]{1}, 32, derive(1));
+        Thread.sleep(120);
+
+        assertEquals(0, cache.size(), "Idle keys must be dropped without another lookup");
+        cache.get("pass", new byte[]{1}, 32, derive(1));
+        assertEquals(2, derivations.get());
+    }
+
+    @Test
+    void testFailedDerivationIsNotCached() {
+        KeyCache cache = new KeyCache(4, Duration.ofMinutes(1));
+        assertNull(cache.get("pass", new byte[0], 32, () -> null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void testConcurrentLookupsShareOneDerivation() throws InterruptedException {
+        KeyCache cache = new KeyCache(4, Duration.ofMinutes(1));
+        Supplier<byte[]> slow = () -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return derive(1).get();
+        };
+
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> assertNotNull(cache.get("pass", new byte[]{1}, 32, slow)));
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1, derivations.get());
+    }
+}
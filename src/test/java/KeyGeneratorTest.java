@@ -2,6 +2,8 @@ import org.example.key.KeyGenerator;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 import java.util.Arrays;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -46,4 +48,18 @@ public class KeyGeneratorTest {
         byte[] key = new KeyGenerator().generateKey("password", "salt".getBytes(), 32);
         assertEquals(32, key.length);
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGenerateKeyFromPassword_matchesStandardPbkdf2() throws Exception {
+        KeyGenerator generator = new KeyGenerator();
+        SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+        String longPassword = "a pass phrase that is longer than one sixty-four byte SHA-256 block";
+        for (String password : new String[]{"password", longPassword}) {
+            for (int length : new int[]{16, 32, 40}) {
+                byte[] salt = ("salt-" + length).getBytes();
+                PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, 100_000, length * 8);
+                assertArrayEquals(factory.generateSecret(spec).getEncoded(), generator.generateKey(password, salt, length));
+            }
+        }
+    }
+}
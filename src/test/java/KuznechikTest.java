@@ -0,0 +1,72 @@
+import org.example.modules.Kuznechik;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KuznechikTest {
+    private static final byte[] SBOX = {
+            0x0C, 0x04, 0x06, 0x02, 0x0A, 0x05, 0x0B, 0x09,
+            0x0E, 0x08, 0x0D, 0x07, 0x01, 0x03, 0x0F, 0x01
+    };
+    private static final int[] PBOX = {
+            5, 2, 11, 8, 15, 6, 9, 12, 3, 0, 13, 10, 7, 4, 1, 14,
+            21, 18, 27, 24, 31, 22, 25, 28, 19, 16, 29, 26, 23, 20, 17, 30,
+            37, 34, 43, 40, 47, 38, 41, 44, 35, 32, 45, 42, 39, 36, 33, 46,
+            53, 50, 59, 56, 63, 54, 57, 60, 51, 48, 61, 58, 55, 52, 49, 62
+    };
+
+    // Bit-by-bit reference of the nibble S-box followed by the per-lane P-box
+    private static byte[] reference(byte[] data, byte[] key) {
+        byte[] result = new byte[64];
+        for (int lane = 0; lane < 64; lane += 8) {
+            long bits = 0;
+            for (int i = 0; i < 8; i++) {
+                int v = (data[lane + i] ^ key[i]) & 0xFF;
+                bits = (bits << 8) | ((SBOX[v >>> 4] << 4) | SBOX[v & 0x0F]);
+            }
+            long transformed = 0;
+            for (int i = 0; i < 64; i++) {
+                transformed |= ((bits >> (63 - PBOX[i])) & 1) << (63 - i);
+            }
+            for (int i = 0; i < 8; i++) {
+                result[lane + i] = (byte) (transformed >>> (56 - 8 * i));
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void testMatchesReference() {
+        Random random = new Random(42);
+        for (int n = 0; n < 1000; n++) {
+            byte[] data = new byte[64];
+            byte[] key = new byte[8];
+            random.nextBytes(data);
+            random.nextBytes(key);
+            assertArrayEquals(reference(data, key), Kuznechik.encrypt(data, key));
+        }
+    }
+
+    @Test
+    void testOffsetVariantMatchesArrayVariant() {
+        Random random = new Random(7);
+        byte[] data = new byte[100];
+        byte[] key = new byte[20];
+        random.nextBytes(data);
+        random.nextBytes(key);
+
+        byte[] out = new byte[80];
+        Kuznechik.encrypt(data, 3, key, 5, out, 11);
+        byte[] expected = Kuznechik.encrypt(Arrays.copyOfRange(data, 3, 67), Arrays.copyOfRange(key, 5, 13));
+        assertArrayEquals(expected, Arrays.copyOfRange(out, 11, 75));
+    }
+
+    @Test
+    void testInvalidSizes() {
+        assertThrows(IllegalArgumentException.class, () -> Kuznechik.encrypt(new byte[63], new byte[8]));
+        assertThrows(IllegalArgumentException.class, () -> Kuznechik.encrypt(new byte[64], new byte[7]));
+    }
+}
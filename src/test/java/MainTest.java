@@ -0,0 +1,49 @@
+import org.example.Main;
+import org.example.util.BBSRandom;
+import org.example.util.DataOperator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class MainTest {
+    @Test
+    void testStdinCommandsCanRepeatBbsParameters(@TempDir Path dir) throws Exception {
+        assumeTrue(System.console() == null, "Commands are only read from stdin without a console");
+        // The shared generator lives as long as the test JVM, so the file holds the modulus it already uses
+        String hex = BBSRandom.shared().getModulus().toString(16);
+        String checksum = DataOperator.bytesToHex(MessageDigest.getInstance("SHA-256").digest(hex.getBytes()));
+        Path params = Files.writeString(dir.resolve("bbs.properties"), "modulus=" + hex + "\nchecksum=" + checksum + "\n");
+        Path plain = Files.writeString(dir.resolve("plain.txt"), "hello");
+        Path first = dir.resolve("first.enc");
+        Path second = dir.resolve("second.enc");
+        String commands = "--bbs-params " + params + " encrypt-file -f " + plain + " -o " + first + " -p pw\n"
+                + "--bbs-params " + params + " encrypt-file -f " + plain + " -o " + second + " -p pw\n";
+
+        InputStream stdin = System.in;
+        PrintStream stderr = System.err;
+        ByteArrayOutputStream errors = new ByteArrayOutputStream();
+        try {
+            System.setIn(new ByteArrayInputStream(commands.getBytes(StandardCharsets.UTF_8)));
+            System.setErr(new PrintStream(errors, true, StandardCharsets.UTF_8));
+            Main.main(new String[0]);
+        } finally {
+            System.setIn(stdin);
+            System.setErr(stderr);
+        }
+
+        assertEquals("", errors.toString(StandardCharsets.UTF_8));
+        assertTrue(Files.exists(first));
+        assertTrue(Files.exists(second));
+    }
+}
@@ -0,0 +1,48 @@
+import org.example.util.MontgomerySquarer;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MontgomerySquarerTest {
+    @Test
+    void testMatchesModPowForVariousModuli() {
+        Random random = new Random(5);
+        BigInteger[] moduli = {
+                BigInteger.probablePrime(512, random).multiply(BigInteger.probablePrime(512, random)),
+                BigInteger.ONE.shiftLeft(1024).subtract(BigInteger.ONE),
+                BigInteger.ONE.shiftLeft(1023).add(BigInteger.ONE),
+                new BigInteger(64, random).setBit(63).setBit(0),
+                BigInteger.valueOf(1_000_003),
+                new BigInteger(700, random).setBit(699).setBit(0)
+        };
+        for (BigInteger modulus : moduli) {
+            BigInteger state = new BigInteger(modulus.bitLength() + 8, random).mod(modulus);
+            MontgomerySquarer squarer = new MontgomerySquarer(modulus);
+            squarer.setState(state);
+            for (int i = 0; i < 500; i++) {
+                state = state.modPow(BigInteger.TWO, modulus);
+                squarer.square();
+                assertEquals(state.longValue(), squarer.lowBits(), "step " + i + " for " + modulus);
+            }
+            assertEquals(state, squarer.value());
+        }
+    }
+
+    @Test
+    void testLargestStateSquaresCorrectly() {
+        BigInteger modulus = BigInteger.ONE.shiftLeft(1024).subtract(BigInteger.valueOf(159));
+        BigInteger state = modulus.subtract(BigInteger.ONE);
+        MontgomerySquarer squarer = new MontgomerySquarer(modulus);
+        squarer.setState(state);
+        squarer.square();
+        assertEquals(BigInteger.ONE, squarer.value());
+    }
+
+    @Test
+    void testRejectsEvenModulus() {
+        assertThrows(IllegalArgumentException.class, () -> new MontgomerySquarer(BigInteger.valueOf(1024)));
+    }
+}
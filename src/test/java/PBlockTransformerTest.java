@@ -0,0 +1,70 @@
+import org.example.modules.PBlockTransformer;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PBlockTransformerTest {
+    private static final int[] MATRIX = {
+            0x02, 0x03, 0x01, 0x01,
+            0x01, 0x02, 0x03, 0x01,
+            0x01, 0x01, 0x02, 0x03,
+            0x03, 0x01, 0x01, 0x02
+    };
+
+    private static int multiply(int a, int b) {
+        int p = 0;
+        for (int i = 0; i < 8; i++) {
+            if ((b & 1) != 0) p ^= a;
+            boolean hiBit = (a & 0x80) != 0;
+            a = (a << 1) & 0xFF;
+            if (hiBit) a ^= 0x1B;
+            b >>= 1;
+        }
+        return p;
+    }
+
+    private static byte[] reference(byte[] data) {
+        byte[] result = new byte[data.length];
+        for (int block = 0; block < data.length; block += 64) {
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    int val = 0;
+                    for (int k = 0; k < 4; k++) {
+                        val ^= multiply(data[block + i * 16 + k] & 0xFF, MATRIX[j * 4 + k]);
+                    }
+                    result[block + i * 16 + j] = (byte) val;
+                }
+            }
+        }
+        return result;
+    }
+
+    @Test
+    void testMatchesReference() {
+        Random random = new Random(42);
+        for (int n = 0; n < 500; n++) {
+            byte[] data = new byte[64 * (1 + n % 3)];
+            random.nextBytes(data);
+            assertArrayEquals(reference(data), PBlockTransformer.apply(data));
+        }
+    }
+
+    @Test
+    void testInPlaceMatchesCopy() {
+        byte[] data = new byte[128];
+        new Random(7).nextBytes(data);
+        byte[] expected = PBlockTransformer.apply(data);
+
+        byte[] buffer = Arrays.copyOf(data, data.length);
+        PBlockTransformer.apply(buffer, 0, buffer.length, buffer, 0);
+        assertArrayEquals(expected, buffer);
+    }
+
+    @Test
+    void testInvalidLength() {
+        assertThrows(IllegalArgumentException.class, () -> PBlockTransformer.apply(new byte[63]));
+    }
+}
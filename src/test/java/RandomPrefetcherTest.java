@@ -0,0 +1,36 @@
+import org.example.util.BBSRandom;
+import org.example.util.RandomPrefetcher;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RandomPrefetcherTest {
+    @Test
+    void testValuesHaveRequestedSizesAndDoNotRepeat() {
+        try (RandomPrefetcher prefetcher = new RandomPrefetcher(new BBSRandom(8), 128, 16, 4)) {
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < 20; i++) {
+                byte[] iv = prefetcher.nextIv();
+                byte[] salt = prefetcher.nextSalt();
+                assertEquals(128, iv.length);
+                assertEquals(16, salt.length);
+                assertTrue(seen.add(Arrays.toString(iv)));
+                assertTrue(seen.add(Arrays.toString(salt)));
+            }
+        }
+    }
+
+    @Test
+    void testTakeFallsBackAfterClose() {
+        RandomPrefetcher prefetcher = new RandomPrefetcher(new BBSRandom(8), 32, 8, 1);
+        prefetcher.close();
+        for (int i = 0; i < 5; i++) {
+            assertEquals(32, prefetcher.nextIv().length);
+            assertEquals(8, prefetcher.nextSalt().length);
+        }
+    }
+}